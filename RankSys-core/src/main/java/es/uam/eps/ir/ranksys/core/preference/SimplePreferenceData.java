@@ -17,6 +17,8 @@
  */
 package es.uam.eps.ir.ranksys.core.preference;
 
+import es.uam.eps.ir.ranksys.core.util.ChunkedLineReader;
+import static es.uam.eps.ir.ranksys.core.util.FastStringSplitter.split;
 import es.uam.eps.ir.ranksys.core.util.parsing.DoubleParser;
 import es.uam.eps.ir.ranksys.core.util.parsing.Parser;
 import java.io.BufferedReader;
@@ -172,46 +174,99 @@ public class SimplePreferenceData<U, I, O> implements PreferenceData<U, I, O> {
      * @throws IOException when path does not exists of IO error
      */
     public static <U, I, O> SimplePreferenceData<U, I, O> load(InputStream in, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser) throws IOException {
-        Map<U, List<IdPref<I, O>>> userMap = new HashMap<>();
-        Map<I, List<IdPref<U, O>>> itemMap = new HashMap<>();
-        int[] numPreferences = new int[]{0};
-
         try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
-            reader.lines().forEach(l -> {
-                String[] tokens = l.split("::", 4);
-                U user = uParser.parse(tokens[0]);
-                I item = iParser.parse(tokens[1]);
-                double value;
-                if (tokens.length >= 3) {
-                    value = dp.parse(tokens[2]);
-                } else {
-                    value = dp.parse(null);
-                }
-                O other;
-                if (tokens.length == 4) {
-                    other = vParser.parse(tokens[3]);
-                } else {
-                    other = vParser.parse(null);
-                }
+            return load(reader.lines(), uParser, iParser, dp, vParser);
+        }
+    }
 
-                numPreferences[0]++;
+    /**
+     * Load preferences from a file in parallel. The file is split in chunks
+     * that are parsed by different threads (see {@link ChunkedLineReader}),
+     * the preferences of each chunk being merged afterwards in the order of
+     * the file.
+     *
+     * Each line is a different preference, with "::"-separated fields
+     * indicating user, item, weight and other information.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param path path of the input file
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parse
+     * @param vParser other info parser
+     * @return a simple map-based PreferenceData with the information read
+     * @throws IOException when path does not exists of IO error
+     */
+    public static <U, I, O> SimplePreferenceData<U, I, O> loadParallel(String path, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser) throws IOException {
+        List<SimplePreferenceData<U, I, O>> chunks = ChunkedLineReader.read(path, lines -> load(lines, uParser, iParser, dp, vParser));
 
-                List<IdPref<I, O>> uList = userMap.get(user);
+        Map<U, List<IdPref<I, O>>> userMap = new HashMap<>();
+        Map<I, List<IdPref<U, O>>> itemMap = new HashMap<>();
+        int numPreferences = 0;
+        for (SimplePreferenceData<U, I, O> chunk : chunks) {
+            chunk.userMap.forEach((u, prefs) -> {
+                List<IdPref<I, O>> uList = userMap.get(u);
                 if (uList == null) {
-                    uList = new ArrayList<>();
-                    userMap.put(user, uList);
+                    userMap.put(u, prefs);
+                } else {
+                    uList.addAll(prefs);
                 }
-                uList.add(new IdPref<>(item, value, other));
-
-                List<IdPref<U, O>> iList = itemMap.get(item);
+            });
+            chunk.itemMap.forEach((i, prefs) -> {
+                List<IdPref<U, O>> iList = itemMap.get(i);
                 if (iList == null) {
-                    iList = new ArrayList<>();
-                    itemMap.put(item, iList);
+                    itemMap.put(i, prefs);
+                } else {
+                    iList.addAll(prefs);
                 }
-                iList.add(new IdPref<>(user, value, other));
             });
+            numPreferences += chunk.numPreferences;
         }
 
+        return new SimplePreferenceData<>(userMap, itemMap, numPreferences);
+    }
+
+    private static <U, I, O> SimplePreferenceData<U, I, O> load(Stream<String> lines, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser) {
+        Map<U, List<IdPref<I, O>>> userMap = new HashMap<>();
+        Map<I, List<IdPref<U, O>>> itemMap = new HashMap<>();
+        int[] numPreferences = new int[]{0};
+
+        lines.forEach(l -> {
+            CharSequence[] tokens = split(l, "::", 4);
+            U user = uParser.parse(tokens[0]);
+            I item = iParser.parse(tokens[1]);
+            double value;
+            if (tokens.length >= 3) {
+                value = dp.parse(tokens[2]);
+            } else {
+                value = dp.parse(null);
+            }
+            O other;
+            if (tokens.length == 4) {
+                other = vParser.parse(tokens[3]);
+            } else {
+                other = vParser.parse(null);
+            }
+
+            numPreferences[0]++;
+
+            List<IdPref<I, O>> uList = userMap.get(user);
+            if (uList == null) {
+                uList = new ArrayList<>();
+                userMap.put(user, uList);
+            }
+            uList.add(new IdPref<>(item, value, other));
+
+            List<IdPref<U, O>> iList = itemMap.get(item);
+            if (iList == null) {
+                iList = new ArrayList<>();
+                itemMap.put(item, iList);
+            }
+            iList.add(new IdPref<>(user, value, other));
+        });
+
         return new SimplePreferenceData<>(userMap, itemMap, numPreferences[0]);
     }
 
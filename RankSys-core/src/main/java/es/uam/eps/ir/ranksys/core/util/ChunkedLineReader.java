@@ -0,0 +1,165 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.core.util;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import static java.util.stream.Collectors.toList;
+
+/**
+ * Parallel reader of line-based text files. The file is split into byte
+ * ranges whose limits are aligned on newlines, and the lines of each range
+ * are processed by a different thread.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class ChunkedLineReader {
+
+    /**
+     * Reads a file in as many chunks as four times the number of available
+     * processors.
+     *
+     * @param <T> type of the result of each chunk
+     * @param path path of the file
+     * @param chunkReader function that processes the lines of a chunk
+     * @return list of results of the chunks, in the order of the file
+     * @throws IOException when IO error
+     */
+    public static <T> List<T> read(String path, Function<Stream<String>, T> chunkReader) throws IOException {
+        return read(path, 4 * Runtime.getRuntime().availableProcessors(), chunkReader);
+    }
+
+    /**
+     * Reads a file in a given number of chunks.
+     *
+     * @param <T> type of the result of each chunk
+     * @param path path of the file
+     * @param numChunks number of chunks
+     * @param chunkReader function that processes the lines of a chunk
+     * @return list of results of the chunks, in the order of the file
+     * @throws IOException when IO error
+     */
+    public static <T> List<T> read(String path, int numChunks, Function<Stream<String>, T> chunkReader) throws IOException {
+        long[] limits = limits(path, numChunks);
+
+        try {
+            return IntStream.range(0, numChunks).parallel()
+                    .mapToObj(c -> {
+                        try (BufferedReader reader = open(path, limits[c], limits[c + 1])) {
+                            return chunkReader.apply(reader.lines());
+                        } catch (IOException ex) {
+                            throw new UncheckedIOException(ex);
+                        }
+                    })
+                    .collect(toList());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static long[] limits(String path, int numChunks) throws IOException {
+        long[] limits = new long[numChunks + 1];
+
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            long size = file.length();
+            limits[numChunks] = size;
+            for (int c = 1; c < numChunks; c++) {
+                long pos = Math.max(size * c / numChunks, limits[c - 1]);
+                if (pos > 0 && pos < size) {
+                    file.seek(pos - 1);
+                    int b;
+                    do {
+                        b = file.read();
+                    } while (b != -1 && b != '\n');
+                    pos = file.getFilePointer();
+                }
+                limits[c] = pos;
+            }
+        }
+
+        return limits;
+    }
+
+    private static BufferedReader open(String path, long start, long end) throws IOException {
+        FileInputStream in = new FileInputStream(path);
+        try {
+            in.getChannel().position(start);
+        } catch (IOException ex) {
+            in.close();
+            throw ex;
+        }
+
+        return new BufferedReader(new InputStreamReader(new RangeInputStream(in, end - start)));
+    }
+
+    private static class RangeInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        public RangeInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int b = super.read();
+            if (b != -1) {
+                remaining--;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int n = super.read(b, off, (int) Math.min(len, remaining));
+            if (n > 0) {
+                remaining -= n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(Math.min(n, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(super.available(), remaining);
+        }
+    }
+}
@@ -69,6 +69,56 @@ public class FastStringSplitter {
         return tokens;
     }
 
+    /**
+     * Splits a CharSequence according to a multi-character delimiter, such as
+     * "::", in a limited number of tokens.
+     *
+     * @param line CharSequence to be split.
+     * @param delimiter delimiter string.
+     * @param n maximum number of tokens to split the input
+     * @return an array of CharSequence's resulting from the split
+     */
+    public static CharSequence[] split(CharSequence line, String delimiter, int n) {
+        if (delimiter.length() == 1) {
+            return split(line, delimiter.charAt(0), n);
+        }
+
+        int[] l0 = new int[n + 1];
+        int i = 0;
+        int j = -delimiter.length();
+        do {
+            l0[i] = j;
+            i++;
+            j = indexOf(line, delimiter, j + delimiter.length());
+        } while (j != -1 && i <= n - 1);
+        l0[i] = line.length();
+
+        CharSequence[] tokens = new CharSequence[i];
+        for (int k = 0; k < i; k++) {
+            tokens[k] = new StringSegment(line, l0[k] + delimiter.length(), l0[k + 1]);
+        }
+
+        return tokens;
+    }
+
+    private static int indexOf(CharSequence line, String str, int fromIndex) {
+        if (line instanceof String) {
+            return ((String) line).indexOf(str, fromIndex);
+        }
+
+        final int max = line.length() - str.length();
+        for (int i = Math.max(fromIndex, 0); i <= max; i++) {
+            int k = 0;
+            while (k < str.length() && line.charAt(i + k) == str.charAt(k)) {
+                k++;
+            }
+            if (k == str.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     private static int[] limits(CharSequence line, int delimiter, int n) {
         int[] l0 = new int[n + 1];
 
@@ -17,8 +17,6 @@
  */
 package es.uam.eps.ir.ranksys.core.util.parsing;
 
-import java.util.stream.IntStream;
-
 /**
  * Generic implementations of the interface Parser.
  *
@@ -29,20 +27,12 @@ public class Parsers {
     /**
      * Parse to Integer.
      */
-    public static Parser<Integer> ip = from -> {
-        int n = from.charAt(0) == '-' ? 1 : 0;
-        int m = from.charAt(0) == '-' ? -1 : 1;
-        return m * IntStream.range(n, from.length()).map(i -> (from.charAt(i) - '0')).reduce(0, (a, b) -> a * 10 + b);
-    };
+    public static Parser<Integer> ip = from -> parseInt(from);
 
     /**
      * Parse to Long.
      */
-    public static Parser<Long> lp = from -> {
-        int n = from.charAt(0) == '-' ? 1 : 0;
-        int m = from.charAt(0) == '-' ? -1 : 1;
-        return m * IntStream.range(n, from.length()).mapToLong(i -> (from.charAt(i) - '0')).reduce(0, (a, b) -> a * 10 + b);
-    };
+    public static Parser<Long> lp = from -> parseLong(from);
 
     /**
      * Parse to String.
@@ -63,4 +53,34 @@ public class Parsers {
      * Parse to Void.
      */
     public static Parser<Void> vp = from -> null;
+
+    /**
+     * Parses a decimal integer without boxing nor intermediate strings.
+     *
+     * @param from CharSequence with the integer
+     * @return the parsed int
+     */
+    public static int parseInt(CharSequence from) {
+        int n = from.charAt(0) == '-' ? 1 : 0;
+        int x = 0;
+        for (int i = n; i < from.length(); i++) {
+            x = x * 10 + (from.charAt(i) - '0');
+        }
+        return n == 1 ? -x : x;
+    }
+
+    /**
+     * Parses a decimal long without boxing nor intermediate strings.
+     *
+     * @param from CharSequence with the long
+     * @return the parsed long
+     */
+    public static long parseLong(CharSequence from) {
+        int n = from.charAt(0) == '-' ? 1 : 0;
+        long x = 0;
+        for (int i = n; i < from.length(); i++) {
+            x = x * 10 + (from.charAt(i) - '0');
+        }
+        return n == 1 ? -x : x;
+    }
 }
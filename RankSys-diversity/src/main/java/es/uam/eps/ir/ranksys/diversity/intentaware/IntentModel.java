@@ -21,7 +21,10 @@ import es.uam.eps.ir.ranksys.core.preference.PreferenceData;
 import es.uam.eps.ir.ranksys.core.feature.FeatureData;
 import es.uam.eps.ir.ranksys.core.model.UserModel;
 import es.uam.eps.ir.ranksys.core.model.UserModel.Model;
+import es.uam.eps.ir.ranksys.fast.feature.CSRFastFeatureData;
 import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 import java.util.stream.Stream;
 
@@ -77,17 +80,22 @@ public class IntentModel<U, I, F> extends UserModel<U> {
     }
 
     /**
-     * User intent-aware model for {@link IntentModel}.
+     * User intent-aware model for {@link IntentModel}. When the feature data
+     * is a {@link CSRFastFeatureData} with bitsets, the intents of the user
+     * are kept as a bitset too, and the intents of an item are obtained by
+     * intersecting both bitsets.
      */
     public class UserIntentModel implements Model<U> {
 
         private final Object2DoubleOpenHashMap<F> prob;
+        private final long[] mask;
 
         /**
          * Constructor.
          *
          * @param user user whose model is created.
          */
+        @SuppressWarnings("unchecked")
         public UserIntentModel(U user) {
             Object2DoubleOpenHashMap<F> auxProb = new Object2DoubleOpenHashMap<>();
             auxProb.defaultReturnValue(0.0);
@@ -110,6 +118,17 @@ public class IntentModel<U, I, F> extends UserModel<U> {
             });
 
             this.prob = auxProb;
+
+            if (featureData instanceof CSRFastFeatureData && ((CSRFastFeatureData<I, F, ?>) featureData).hasBitsets()) {
+                CSRFastFeatureData<I, F, ?> csrData = (CSRFastFeatureData<I, F, ?>) featureData;
+                this.mask = new long[csrData.getBitsetWords()];
+                prob.keySet().forEach(f -> {
+                    int fidx = csrData.feature2fidx(f);
+                    mask[fidx >>> 6] |= 1L << fidx;
+                });
+            } else {
+                this.mask = null;
+            }
         }
 
         /**
@@ -127,8 +146,30 @@ public class IntentModel<U, I, F> extends UserModel<U> {
          * @param i item
          * @return the features associated with the item
          */
+        @SuppressWarnings("unchecked")
         public Stream<F> getItemIntents(I i) {
-            return featureData.getItemFeatures(i).map(fv -> fv.id).filter(getIntents()::contains);
+            if (mask == null) {
+                return featureData.getItemFeatures(i).map(fv -> fv.id).filter(getIntents()::contains);
+            }
+
+            CSRFastFeatureData<I, F, ?> csrData = (CSRFastFeatureData<I, F, ?>) featureData;
+            int iidx = csrData.item2iidx(i);
+            if (iidx < 0) {
+                return Stream.empty();
+            }
+
+            long[] bits = csrData.getBitsets();
+            int offset = csrData.getBitsetOffset(iidx);
+            List<F> intents = new ArrayList<>();
+            for (int w = 0; w < mask.length; w++) {
+                long word = bits[offset + w] & mask[w];
+                while (word != 0) {
+                    intents.add(csrData.fidx2feature(w * 64 + Long.numberOfTrailingZeros(word)));
+                    word &= word - 1;
+                }
+            }
+
+            return intents.stream();
         }
 
         /**
@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.examples;
+
+import static es.uam.eps.ir.ranksys.core.util.parsing.DoubleParser.ddp;
+import static es.uam.eps.ir.ranksys.core.util.parsing.Parsers.lp;
+import static es.uam.eps.ir.ranksys.core.util.parsing.Parsers.vp;
+
+import java.io.IOException;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.SimpleFastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import es.uam.eps.ir.ranksys.nn.neighborhood.Neighborhood;
+import es.uam.eps.ir.ranksys.nn.neighborhood.PrunedTopKNeighborhood;
+import es.uam.eps.ir.ranksys.nn.neighborhood.TopKNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.VectorCosineSimilarity;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+
+/**
+ * Example main comparing the exhaustive and the pruned top-k item
+ * neighborhoods: it reports the fraction of item pairs whose similarity
+ * the pruned neighborhood does not need to calculate, and the running times
+ * of both.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class PrunedNeighborhoodBenchmark {
+
+	public static String RATINGS_FOLDER = "src/main/resources/ratings/";
+
+	public static String USER_FILE = "src/main/resources/users/users.dat";
+	public static String MOVIES_FILE = "src/main/resources/movies/movies.dat";
+
+	public static void main(String[] args) throws IOException {
+
+		FastUserIndex<Long> userIndex = SimpleFastUserIndex.load(USER_FILE, lp);
+		FastItemIndex<Long> itemIndex = SimpleFastItemIndex.load(MOVIES_FILE,
+				lp);
+		FastPreferenceData<Long, Long, Void> trainData = SimpleFastPreferenceData
+				.load(RATINGS_FOLDER + "train.0", lp, lp, ddp, vp, userIndex,
+						itemIndex);
+
+		double alpha = 0.5;
+		VectorSimilarity sim = new VectorCosineSimilarity(
+				new TransposedPreferenceData<>(trainData), alpha);
+
+		for (int k : new int[] { 10, 50, 100 }) {
+			// exhaustive search: every pair of co-rated items is calculated
+			long numPairs = itemIndex.getAllIidx().parallel()
+					.mapToLong(iidx -> sim.similarElems(iidx).count()).sum();
+			Neighborhood exhaustive = new TopKNeighborhood(sim, k);
+			long time0 = System.nanoTime();
+			itemIndex.getAllIidx().parallel()
+					.forEach(iidx -> exhaustive.getNeighbors(iidx).count());
+			long time1 = System.nanoTime();
+
+			// pruned search
+			PrunedTopKNeighborhood pruned = new PrunedTopKNeighborhood(sim,
+					k);
+			long time2 = System.nanoTime();
+			itemIndex.getAllIidx().parallel()
+					.forEach(iidx -> pruned.getNeighbors(iidx).count());
+			long time3 = System.nanoTime();
+
+			System.out.printf(
+					"k=%d pairs=%d candidates=%d (%.1f%% pruned) verified=%d (%.1f%% pruned) exhaustive=%.1fms pruned=%.1fms%n",
+					k, numPairs, pruned.getNumCandidates(),
+					100.0 * (numPairs - pruned.getNumCandidates()) / numPairs,
+					pruned.getNumVerified(),
+					100.0 * (numPairs - pruned.getNumVerified()) / numPairs,
+					(time1 - time0) / 1e6, (time3 - time2) / 1e6);
+		}
+	}
+}
@@ -0,0 +1,341 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.feature;
+
+import es.uam.eps.ir.ranksys.fast.IdxObject;
+import es.uam.eps.ir.ranksys.fast.index.FastFeatureIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of FastFeatureData backed by primitive arrays in compressed
+ * sparse row (CSR) layout, both by item and by feature. The features of each
+ * item are sorted by index. When the number of features is small (for
+ * example, genres), the features of each item are also stored as a bitset,
+ * so that intersections between items are computed as AND and popcount
+ * operations.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ *
+ * @param <I> type of the items
+ * @param <F> type of the features
+ * @param <V> type of the information about item-feature pairs
+ */
+public class CSRFastFeatureData<I, F, V> extends AbstractFastFeatureData<I, F, V> {
+
+    /**
+     * Maximum number of features for which bitsets are created.
+     */
+    public static final int MAX_BITSET_FEATURES = 512;
+
+    private final int[] iOffsets;
+    private final int[] iFidxs;
+    private final V[] iVs;
+    private final int[] fOffsets;
+    private final int[] fIidxs;
+    private final V[] fVs;
+    private final int words;
+    private final long[] bits;
+    private final boolean binary;
+
+    /**
+     * Constructor.
+     *
+     * @param iOffsets offsets of the features of each item, of length numItems + 1
+     * @param iFidxs sorted feature indexes of each item
+     * @param iVs information of the features of each item, null if not available
+     * @param fOffsets offsets of the items of each feature, of length numFeatures + 1
+     * @param fIidxs item indexes of each feature
+     * @param fVs information of the items of each feature, null if not available
+     * @param bits bitsets of features of each item, each of length ceil(numFeatures / 64), null if not available
+     * @param binary whether the information of all pairs is either null or 1.0
+     * @param ii item index
+     * @param fi feature index
+     */
+    protected CSRFastFeatureData(int[] iOffsets, int[] iFidxs, V[] iVs, int[] fOffsets, int[] fIidxs, V[] fVs, long[] bits, boolean binary, FastItemIndex<I> ii, FastFeatureIndex<F> fi) {
+        super(ii, fi);
+        this.iOffsets = iOffsets;
+        this.iFidxs = iFidxs;
+        this.iVs = iVs;
+        this.fOffsets = fOffsets;
+        this.fIidxs = fIidxs;
+        this.fVs = fVs;
+        this.words = (fi.numFeatures() + 63) / 64;
+        this.bits = bits;
+        this.binary = binary;
+    }
+
+    @Override
+    public Stream<IdxObject<V>> getIidxFeatures(int iidx) {
+        return getObjects(iOffsets, iFidxs, iVs, iidx);
+    }
+
+    @Override
+    public Stream<IdxObject<V>> getFidxItems(int fidx) {
+        return getObjects(fOffsets, fIidxs, fVs, fidx);
+    }
+
+    private static <V> Stream<IdxObject<V>> getObjects(int[] offsets, int[] idxs, V[] vs, int idx) {
+        if (vs == null) {
+            return IntStream.range(offsets[idx], offsets[idx + 1])
+                    .mapToObj(j -> new IdxObject<>(idxs[j], null));
+        } else {
+            return IntStream.range(offsets[idx], offsets[idx + 1])
+                    .mapToObj(j -> new IdxObject<>(idxs[j], vs[j]));
+        }
+    }
+
+    @Override
+    public int numItems(int fidx) {
+        return fOffsets[fidx + 1] - fOffsets[fidx];
+    }
+
+    @Override
+    public int numFeatures(int iidx) {
+        return iOffsets[iidx + 1] - iOffsets[iidx];
+    }
+
+    @Override
+    public IntStream getIidxWithFeatures() {
+        return IntStream.range(0, numItems())
+                .filter(iidx -> numFeatures(iidx) > 0);
+    }
+
+    @Override
+    public IntStream getFidxWithItems() {
+        return IntStream.range(0, numFeatures())
+                .filter(fidx -> numItems(fidx) > 0);
+    }
+
+    @Override
+    public int numItemsWithFeatures() {
+        return (int) getIidxWithFeatures().count();
+    }
+
+    @Override
+    public int numFeaturesWithItems() {
+        return (int) getFidxWithItems().count();
+    }
+
+    /**
+     * Returns the indexes of the features of an item, in increasing order.
+     *
+     * @param iidx item index
+     * @return iterator of feature indexes
+     */
+    public IntIterator getIidxFidxs(int iidx) {
+        return IntIterators.wrap(iFidxs, iOffsets[iidx], numFeatures(iidx));
+    }
+
+    /**
+     * Returns the indexes of the items having a feature.
+     *
+     * @param fidx feature index
+     * @return iterator of item indexes
+     */
+    public IntIterator getFidxIidxs(int fidx) {
+        return IntIterators.wrap(fIidxs, fOffsets[fidx], numItems(fidx));
+    }
+
+    /**
+     * Checks whether an item has a feature.
+     *
+     * @param iidx item index
+     * @param fidx feature index
+     * @return true if the item has the feature
+     */
+    public boolean hasFeature(int iidx, int fidx) {
+        if (bits != null) {
+            return (bits[iidx * words + (fidx >>> 6)] & (1L << fidx)) != 0;
+        }
+        return Arrays.binarySearch(iFidxs, iOffsets[iidx], iOffsets[iidx + 1], fidx) >= 0;
+    }
+
+    /**
+     * Returns the number of features shared by two items.
+     *
+     * @param iidx1 first item index
+     * @param iidx2 second item index
+     * @return number of common features
+     */
+    public int intersectionSize(int iidx1, int iidx2) {
+        if (bits != null) {
+            int n = 0;
+            int o1 = iidx1 * words;
+            int o2 = iidx2 * words;
+            for (int w = 0; w < words; w++) {
+                n += Long.bitCount(bits[o1 + w] & bits[o2 + w]);
+            }
+            return n;
+        }
+
+        int n = 0;
+        int j1 = iOffsets[iidx1];
+        int j2 = iOffsets[iidx2];
+        int e1 = iOffsets[iidx1 + 1];
+        int e2 = iOffsets[iidx2 + 1];
+        while (j1 < e1 && j2 < e2) {
+            if (iFidxs[j1] < iFidxs[j2]) {
+                j1++;
+            } else if (iFidxs[j1] > iFidxs[j2]) {
+                j2++;
+            } else {
+                n++;
+                j1++;
+                j2++;
+            }
+        }
+        return n;
+    }
+
+    /**
+     * Checks whether the features of the items are stored as bitsets.
+     *
+     * @return true if bitsets are available
+     */
+    public boolean hasBitsets() {
+        return bits != null;
+    }
+
+    /**
+     * Returns the bitset of the features of an item. The bitset occupies
+     * {@link #getBitsetWords()} longs from the returned offset in the
+     * array returned by {@link #getBitsets()}.
+     *
+     * @param iidx item index
+     * @return offset of the bitset of the item
+     */
+    public int getBitsetOffset(int iidx) {
+        return iidx * words;
+    }
+
+    /**
+     * Returns the array of bitsets of all items.
+     *
+     * @return array of bitsets, null if not available
+     */
+    public long[] getBitsets() {
+        return bits;
+    }
+
+    /**
+     * Returns the number of longs of each bitset.
+     *
+     * @return number of longs of each bitset
+     */
+    public int getBitsetWords() {
+        return words;
+    }
+
+    /**
+     * Checks whether the information of all item-feature pairs is null or
+     * 1.0, that is, whether items are binary vectors of features.
+     *
+     * @return true if the feature data is binary
+     */
+    public boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Creates a CSR feature data with the same item-feature pairs as another
+     * fast feature data. Bitsets are created if there are at most
+     * {@link #MAX_BITSET_FEATURES} features.
+     *
+     * @param <I> type of the items
+     * @param <F> type of the features
+     * @param <V> type of the information about item-feature pairs
+     * @param data feature data to be copied
+     * @return a CSR feature data
+     */
+    public static <I, F, V> CSRFastFeatureData<I, F, V> create(FastFeatureData<I, F, V> data) {
+        return create(data, data.numFeatures() <= MAX_BITSET_FEATURES);
+    }
+
+    /**
+     * Creates a CSR feature data with the same item-feature pairs as another
+     * fast feature data.
+     *
+     * @param <I> type of the items
+     * @param <F> type of the features
+     * @param <V> type of the information about item-feature pairs
+     * @param data feature data to be copied
+     * @param bitsets whether bitsets of the features of each item are created
+     * @return a CSR feature data
+     */
+    @SuppressWarnings("unchecked")
+    public static <I, F, V> CSRFastFeatureData<I, F, V> create(FastFeatureData<I, F, V> data, boolean bitsets) {
+        int numItems = data.numItems();
+        int numFeatures = data.numFeatures();
+
+        int[] iOffsets = new int[numItems + 1];
+        int[] fOffsets = new int[numFeatures + 1];
+        data.getIidxWithFeatures().forEach(iidx -> iOffsets[iidx + 1] = data.numFeatures(iidx));
+        data.getFidxWithItems().forEach(fidx -> fOffsets[fidx + 1] = data.numItems(fidx));
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            iOffsets[iidx + 1] += iOffsets[iidx];
+        }
+        for (int fidx = 0; fidx < numFeatures; fidx++) {
+            fOffsets[fidx + 1] += fOffsets[fidx];
+        }
+
+        int n = iOffsets[numItems];
+        int[] iFidxs = new int[n];
+        V[] iVs = (V[]) new Object[n];
+        int[] fIidxs = new int[n];
+        V[] fVs = (V[]) new Object[n];
+        boolean hasValues = false;
+        boolean binary = true;
+
+        int[] fPos = Arrays.copyOf(fOffsets, numFeatures);
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            int offset = iOffsets[iidx];
+            IdxObject<V>[] fvs = data.getIidxFeatures(iidx).toArray(IdxObject[]::new);
+            Arrays.sort(fvs, (fv1, fv2) -> Integer.compare(fv1.idx, fv2.idx));
+            for (int k = 0; k < fvs.length; k++) {
+                IdxObject<V> fv = fvs[k];
+                iFidxs[offset + k] = fv.idx;
+                iVs[offset + k] = fv.v;
+                int fp = fPos[fv.idx]++;
+                fIidxs[fp] = iidx;
+                fVs[fp] = fv.v;
+                if (fv.v != null) {
+                    hasValues = true;
+                    binary &= fv.v instanceof Number && ((Number) fv.v).doubleValue() == 1.0;
+                }
+            }
+        }
+
+        long[] bits = null;
+        if (bitsets) {
+            int words = (numFeatures + 63) / 64;
+            bits = new long[numItems * words];
+            for (int iidx = 0; iidx < numItems; iidx++) {
+                for (int j = iOffsets[iidx]; j < iOffsets[iidx + 1]; j++) {
+                    bits[iidx * words + (iFidxs[j] >>> 6)] |= 1L << iFidxs[j];
+                }
+            }
+        }
+
+        return new CSRFastFeatureData<>(iOffsets, iFidxs, hasValues ? iVs : null, fOffsets, fIidxs, hasValues ? fVs : null, bits, binary, data, data);
+    }
+}
@@ -17,11 +17,13 @@
  */
 package es.uam.eps.ir.ranksys.fast.feature;
 
+import es.uam.eps.ir.ranksys.core.util.ChunkedLineReader;
 import static es.uam.eps.ir.ranksys.core.util.FastStringSplitter.split;
 import es.uam.eps.ir.ranksys.core.util.parsing.Parser;
 import es.uam.eps.ir.ranksys.fast.IdxObject;
 import es.uam.eps.ir.ranksys.fast.index.FastFeatureIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.IdxPermutation;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -29,6 +31,7 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.List;
+import static java.util.stream.Collectors.toList;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -110,6 +113,39 @@ public class SimpleFastFeatureData<I, F, V> extends AbstractFastFeatureData<I, F
                 .filter(fv -> fv != null).count();
     }
     
+    /**
+     * Creates a feature data with the same item-feature pairs as another
+     * fast feature data, but with permuted item and feature indexes (see
+     * {@link IdxPermutation}).
+     *
+     * @param <I> type of the items
+     * @param <F> type of the features
+     * @param <V> type of the information about item-feature pairs
+     * @param data feature data to be copied
+     * @param iPerm permutation of the item indexes
+     * @param fPerm permutation of the feature indexes
+     * @return a simple FeatureData with the new indexes
+     */
+    public static <I, F, V> SimpleFastFeatureData<I, F, V> create(FastFeatureData<I, F, V> data, IdxPermutation iPerm, IdxPermutation fPerm) {
+        List<List<IdxObject<V>>> iidxList = new ArrayList<>();
+        for (int iidx = 0; iidx < iPerm.size(); iidx++) {
+            List<IdxObject<V>> iList = data.getIidxFeatures(iPerm.oldIdx(iidx))
+                    .map(fv -> new IdxObject<>(fPerm.newIdx(fv.idx), fv.v))
+                    .collect(toList());
+            iidxList.add(iList.isEmpty() ? null : iList);
+        }
+
+        List<List<IdxObject<V>>> fidxList = new ArrayList<>();
+        for (int fidx = 0; fidx < fPerm.size(); fidx++) {
+            List<IdxObject<V>> fList = data.getFidxItems(fPerm.oldIdx(fidx))
+                    .map(iv -> new IdxObject<>(iPerm.newIdx(iv.idx), iv.v))
+                    .collect(toList());
+            fidxList.add(fList.isEmpty() ? null : fList);
+        }
+
+        return new SimpleFastFeatureData<>(iidxList, fidxList, iPerm.permute((FastItemIndex<I>) data), fPerm.permute((FastFeatureIndex<F>) data));
+    }
+
     /**
      * Load feature data from a file.
      * 
@@ -200,4 +236,84 @@ public class SimpleFastFeatureData<I, F, V> extends AbstractFastFeatureData<I, F
         return new SimpleFastFeatureData<>(iidxList, fidxList, iIndex, fIndex);
     }
 
+    /**
+     * Load feature data from a file in parallel. The file is split in chunks
+     * aligned on newlines that are parsed by different threads (see
+     * {@link ChunkedLineReader}), and the chunks are then merged in the
+     * order of the file.
+     * 
+     * Each line is a different item-feature pair, with tab-separated fields indicating
+     * item, feature and other information.
+     *
+     * @param <I> type of the items
+     * @param <F> type of the features
+     * @param <V> type of the information about item-feature pairs
+     * @param path file path
+     * @param iParser item type parser
+     * @param fParser feature type parser
+     * @param vParser information type parser
+     * @param iIndex item index
+     * @param fIndex feature index
+     * @return a simple map-based FeatureData
+     * @throws IOException when path does not exists or IO error
+     */
+    public static <I, F, V> SimpleFastFeatureData<I, F, V> loadParallel(String path, Parser<I> iParser, Parser<F> fParser, Parser<V> vParser, FastItemIndex<I> iIndex, FastFeatureIndex<F> fIndex) throws IOException {
+        List<List<IdxObject<IdxObject<V>>>> chunks = ChunkedLineReader.read(path, lines -> {
+            List<IdxObject<IdxObject<V>>> pairs = new ArrayList<>();
+            lines.forEach(l -> {
+                CharSequence[] tokens = split(l, '\t', 3);
+                I item = iParser.parse(tokens[0]);
+                F feature = fParser.parse(tokens[1]);
+                V value;
+                if (tokens.length == 3) {
+                    value = vParser.parse(tokens[2]);
+                } else {
+                    value = vParser.parse(null);
+                }
+
+                int iidx = iIndex.item2iidx(item);
+                int fidx = fIndex.feature2fidx(feature);
+
+                if (iidx == -1 || fidx == -1) {
+                    return;
+                }
+
+                pairs.add(new IdxObject<>(iidx, new IdxObject<>(fidx, value)));
+            });
+            return pairs;
+        });
+
+        List<List<IdxObject<V>>> iidxList = new ArrayList<>();
+        for (int iidx = 0; iidx < iIndex.numItems(); iidx++) {
+            iidxList.add(null);
+        }
+        
+        List<List<IdxObject<V>>> fidxList = new ArrayList<>();
+        for (int fidx = 0; fidx < fIndex.numFeatures(); fidx++) {
+            fidxList.add(null);
+        }
+
+        chunks.forEach(pairs -> pairs.forEach(pair -> {
+            int iidx = pair.idx;
+            int fidx = pair.v.idx;
+            V value = pair.v.v;
+
+            List<IdxObject<V>> iList = iidxList.get(iidx);
+            if (iList == null) {
+                iList = new ArrayList<>();
+                iidxList.set(iidx, iList);
+            }
+            iList.add(pair.v);
+
+            List<IdxObject<V>> fList = fidxList.get(fidx);
+            if (fList == null) {
+                fList = new ArrayList<>();
+                fidxList.set(fidx, fList);
+            }
+            fList.add(new IdxObject<>(iidx, value));
+        }));
+
+        return new SimpleFastFeatureData<>(iidxList, fidxList, iIndex, fIndex);
+    }
+
 }
@@ -0,0 +1,227 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.index;
+
+import es.uam.eps.ir.ranksys.fast.feature.FastFeatureData;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import java.util.Arrays;
+
+/**
+ * Permutation of the indexes of users, items or features. It is used to
+ * reindex preference data, feature data and factorizations consistently, for
+ * example by decreasing popularity so that the rows that are accessed most
+ * often lie in contiguous memory.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class IdxPermutation {
+
+    private final int[] order;
+    private final int[] rank;
+
+    /**
+     * Constructor.
+     *
+     * @param order old index of each new index
+     */
+    protected IdxPermutation(int[] order) {
+        this.order = order;
+        this.rank = new int[order.length];
+        for (int k = 0; k < order.length; k++) {
+            rank[order[k]] = k;
+        }
+    }
+
+    /**
+     * Returns the number of indexes.
+     *
+     * @return number of indexes
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Returns the new index of an old index.
+     *
+     * @param idx old index
+     * @return new index, or -1 if the old index is -1
+     */
+    public int newIdx(int idx) {
+        return idx < 0 ? idx : rank[idx];
+    }
+
+    /**
+     * Returns the old index of a new index.
+     *
+     * @param idx new index
+     * @return old index
+     */
+    public int oldIdx(int idx) {
+        return order[idx];
+    }
+
+    /**
+     * Returns a user index with the new indexes.
+     *
+     * @param <U> type of the users
+     * @param uIndex user index with the old indexes
+     * @return user index with the new indexes
+     */
+    public <U> FastUserIndex<U> permute(FastUserIndex<U> uIndex) {
+        return new FastUserIndex<U>() {
+
+            @Override
+            public int numUsers() {
+                return uIndex.numUsers();
+            }
+
+            @Override
+            public int user2uidx(U u) {
+                return newIdx(uIndex.user2uidx(u));
+            }
+
+            @Override
+            public U uidx2user(int uidx) {
+                return uIndex.uidx2user(oldIdx(uidx));
+            }
+        };
+    }
+
+    /**
+     * Returns an item index with the new indexes.
+     *
+     * @param <I> type of the items
+     * @param iIndex item index with the old indexes
+     * @return item index with the new indexes
+     */
+    public <I> FastItemIndex<I> permute(FastItemIndex<I> iIndex) {
+        return new FastItemIndex<I>() {
+
+            @Override
+            public int numItems() {
+                return iIndex.numItems();
+            }
+
+            @Override
+            public int item2iidx(I i) {
+                return newIdx(iIndex.item2iidx(i));
+            }
+
+            @Override
+            public I iidx2item(int iidx) {
+                return iIndex.iidx2item(oldIdx(iidx));
+            }
+        };
+    }
+
+    /**
+     * Returns a feature index with the new indexes.
+     *
+     * @param <F> type of the features
+     * @param fIndex feature index with the old indexes
+     * @return feature index with the new indexes
+     */
+    public <F> FastFeatureIndex<F> permute(FastFeatureIndex<F> fIndex) {
+        return new FastFeatureIndex<F>() {
+
+            @Override
+            public int numFeatures() {
+                return fIndex.numFeatures();
+            }
+
+            @Override
+            public int feature2fidx(F f) {
+                return newIdx(fIndex.feature2fidx(f));
+            }
+
+            @Override
+            public F fidx2feature(int fidx) {
+                return fIndex.fidx2feature(oldIdx(fidx));
+            }
+        };
+    }
+
+    /**
+     * Creates a permutation from the order of the old indexes.
+     *
+     * @param order old index of each new index
+     * @return permutation
+     */
+    public static IdxPermutation of(int[] order) {
+        return new IdxPermutation(order);
+    }
+
+    /**
+     * Creates a permutation that sorts indexes by decreasing frequency. Ties
+     * keep the original order.
+     *
+     * @param counts frequency of each old index
+     * @return permutation
+     */
+    public static IdxPermutation byFrequency(int[] counts) {
+        long[] keys = new long[counts.length];
+        for (int idx = 0; idx < counts.length; idx++) {
+            keys[idx] = ((long) (Integer.MAX_VALUE - counts[idx]) << 32) | idx;
+        }
+        Arrays.parallelSort(keys);
+
+        int[] order = new int[counts.length];
+        for (int k = 0; k < keys.length; k++) {
+            order[k] = (int) keys[k];
+        }
+
+        return new IdxPermutation(order);
+    }
+
+    /**
+     * Creates a permutation of the users by decreasing number of preferences.
+     *
+     * @param data preference data
+     * @return permutation of user indexes
+     */
+    public static IdxPermutation byUserPopularity(FastPreferenceData<?, ?, ?> data) {
+        int[] counts = new int[data.numUsers()];
+        data.getUidxWithPreferences().forEach(uidx -> counts[uidx] = data.numItems(uidx));
+        return byFrequency(counts);
+    }
+
+    /**
+     * Creates a permutation of the items by decreasing number of preferences.
+     *
+     * @param data preference data
+     * @return permutation of item indexes
+     */
+    public static IdxPermutation byItemPopularity(FastPreferenceData<?, ?, ?> data) {
+        int[] counts = new int[data.numItems()];
+        data.getIidxWithPreferences().forEach(iidx -> counts[iidx] = data.numUsers(iidx));
+        return byFrequency(counts);
+    }
+
+    /**
+     * Creates a permutation of the features by decreasing number of items.
+     *
+     * @param data feature data
+     * @return permutation of feature indexes
+     */
+    public static IdxPermutation byFeaturePopularity(FastFeatureData<?, ?, ?> data) {
+        int[] counts = new int[data.numFeatures()];
+        data.getFidxWithItems().forEach(fidx -> counts[fidx] = data.numItems(fidx));
+        return byFrequency(counts);
+    }
+}
@@ -0,0 +1,133 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.index;
+
+import es.uam.eps.ir.ranksys.core.util.FastStringSplitter;
+import es.uam.eps.ir.ranksys.core.util.parsing.Parsers;
+import es.uam.eps.ir.ranksys.fast.utils.SortedIntIndex;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of FastUserIndex for int identifiers backed by a sorted array
+ * (see {@link SortedIntIndex}). Besides the methods of FastUserIndex, it provides
+ * primitive versions of them to avoid boxing the identifiers.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class IntFastUserIndex implements FastUserIndex<Integer> {
+
+    private final SortedIntIndex index;
+
+    /**
+     * Constructor.
+     *
+     * @param index sorted index of identifiers
+     */
+    protected IntFastUserIndex(SortedIntIndex index) {
+        this.index = index;
+    }
+
+    @Override
+    public boolean containsUser(Integer user) {
+        return user2uidx(user) >= 0;
+    }
+
+    @Override
+    public int numUsers() {
+        return index.size();
+    }
+
+    @Override
+    public Stream<Integer> getAllUsers() {
+        return index.getIds().boxed();
+    }
+
+    @Override
+    public int user2uidx(Integer user) {
+        return user == null ? -1 : index.getIdx(user.intValue());
+    }
+
+    /**
+     * Returns the index assigned to the user.
+     *
+     * @param user user
+     * @return the index of the user, or -1 if the user does not exist
+     */
+    public int user2uidx(int user) {
+        return index.getIdx(user);
+    }
+
+    @Override
+    public Integer uidx2user(int uidx) {
+        return index.getId(uidx);
+    }
+
+    /**
+     * Returns the user represented with the index without boxing it.
+     *
+     * @param uidx user index
+     * @return the user whose index is uidx
+     */
+    public int uidx2userId(int uidx) {
+        return index.getId(uidx);
+    }
+
+    /**
+     * Creates a user index from an array of identifiers, possibly unsorted and
+     * with duplicates. Indexes are assigned in increasing order of identifier.
+     *
+     * @param ids identifiers of the users
+     * @param n number of identifiers to be taken from the array
+     * @return a fast user index
+     */
+    public static IntFastUserIndex create(int[] ids, int n) {
+        return new IntFastUserIndex(SortedIntIndex.create(ids, n));
+    }
+
+    /**
+     * Creates a user index from a file where the first column lists the users.
+     *
+     * @param path path of the file
+     * @return a fast user index
+     * @throws IOException when file does not exist or when IO error
+     */
+    public static IntFastUserIndex load(String path) throws IOException {
+        return load(new FileInputStream(path));
+    }
+
+    /**
+     * Creates a user index from an input stream where the first column lists the users.
+     *
+     * @param in input stream
+     * @return a fast user index
+     * @throws IOException when IO error
+     */
+    public static IntFastUserIndex load(InputStream in) throws IOException {
+        IntArrayList ids = new IntArrayList();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            reader.lines().forEach(line -> ids.add(Parsers.parseInt(FastStringSplitter.split(line, "::", 2)[0])));
+        }
+        return create(ids.elements(), ids.size());
+    }
+}
@@ -81,6 +81,20 @@ public class SimpleFastItemIndex<I> implements FastItemIndex<I> {
         return iMap.add(i);
     }
 
+    /**
+     * Creates a item index with the items of a stream, indexes being assigned
+     * in the order of the stream. Repeated items are ignored.
+     *
+     * @param <I> type of the items
+     * @param items stream of items
+     * @return a fast item index
+     */
+    public static <I> SimpleFastItemIndex<I> create(Stream<I> items) {
+        SimpleFastItemIndex<I> itemIndex = new SimpleFastItemIndex<>();
+        items.forEachOrdered(i -> itemIndex.add(i));
+        return itemIndex;
+    }
+
     /**
      * Creates a item index from a file where the first column lists the items.
      *
@@ -77,6 +77,20 @@ public class SimpleFastUserIndex<U> implements FastUserIndex<U> {
         return uMap.add(u);
     }
     
+    /**
+     * Creates a user index with the users of a stream, indexes being assigned
+     * in the order of the stream. Repeated users are ignored.
+     *
+     * @param <U> type of the users
+     * @param users stream of users
+     * @return a fast user index
+     */
+    public static <U> SimpleFastUserIndex<U> create(Stream<U> users) {
+        SimpleFastUserIndex<U> userIndex = new SimpleFastUserIndex<>();
+        users.forEachOrdered(u -> userIndex.add(u));
+        return userIndex;
+    }
+
     /**
      * Creates a user index from a file where the first column lists the users.
      *
@@ -0,0 +1,372 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterators;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Mutable store of preferences for online updates. Preferences are kept in
+ * an immutable CSR base ({@link CSRFastPreferenceData}) plus per-user and
+ * per-item append buffers where new preferences are added concurrently.
+ *
+ * Readers do not access the store directly, but immutable snapshots that
+ * implement FastPreferenceData and can be used without locking. Taking a
+ * snapshot does not copy the buffered preferences: buffers only grow by
+ * appending or by being replaced, so a snapshot just keeps the arrays and
+ * lengths of the buffers at the time it was taken. Compaction folds the
+ * buffers into a new CSR base.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class AppendablePreferenceStore<U, I> {
+
+    private static final int NUM_STRIPES = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private final Buffers uBuffers;
+    private final Buffers iBuffers;
+    private CSRFastPreferenceData<U, I, Void> base;
+
+    /**
+     * Constructor.
+     *
+     * @param base initial preferences
+     */
+    protected AppendablePreferenceStore(CSRFastPreferenceData<U, I, Void> base) {
+        this.base = base;
+        this.uBuffers = new Buffers(base.numUsers());
+        this.iBuffers = new Buffers(base.numItems());
+    }
+
+    /**
+     * Adds a preference. It can be called concurrently from different
+     * threads, and is visible in the snapshots taken after it returns.
+     *
+     * @param uidx user index
+     * @param iidx item index
+     * @param v value of the preference
+     */
+    public void add(int uidx, int iidx, double v) {
+        lock.readLock().lock();
+        try {
+            uBuffers.append(uidx, iidx, v);
+            iBuffers.append(iidx, uidx, v);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns an immutable view of the preferences added so far.
+     *
+     * @return snapshot of the preferences
+     */
+    public FastPreferenceData<U, I, Void> snapshot() {
+        lock.writeLock().lock();
+        try {
+            return new Snapshot<>(base, uBuffers.capture(), iBuffers.capture());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Folds the buffered preferences into a new CSR base. Preferences can be
+     * added while the new base is built; those are kept in the buffers.
+     */
+    public void compact() {
+        synchronized (compactionLock) {
+            Snapshot<U, I> snapshot = (Snapshot<U, I>) snapshot();
+            CSRFastPreferenceData<U, I, Void> newBase = CSRFastPreferenceData.create(snapshot);
+
+            lock.writeLock().lock();
+            try {
+                uBuffers.release(snapshot.uDelta);
+                iBuffers.release(snapshot.iDelta);
+                base = newBase;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Append-only list of preferences of a user or item. Once written, the
+     * first size elements of the arrays are never modified.
+     */
+    private static class Row {
+
+        private int[] idxs;
+        private double[] vs;
+        private int size;
+
+        public Row(int[] idxs, double[] vs, int size) {
+            this.idxs = idxs;
+            this.vs = vs;
+            this.size = size;
+        }
+
+        public void add(int idx, double v) {
+            if (size == idxs.length) {
+                int capacity = Math.max(4, size + (size >> 1));
+                idxs = Arrays.copyOf(idxs, capacity);
+                vs = Arrays.copyOf(vs, capacity);
+            }
+            idxs[size] = idx;
+            vs[size] = v;
+            size++;
+        }
+    }
+
+    /**
+     * Append buffers of all the users or all the items.
+     */
+    private static class Buffers {
+
+        private final Row[] rows;
+        private final Object[] stripes;
+        private IntArrayList dirty;
+
+        public Buffers(int n) {
+            this.rows = new Row[n];
+            this.stripes = new Object[NUM_STRIPES];
+            for (int s = 0; s < NUM_STRIPES; s++) {
+                stripes[s] = new Object();
+            }
+            this.dirty = new IntArrayList();
+        }
+
+        public void append(int idx, int jdx, double v) {
+            synchronized (stripes[idx % NUM_STRIPES]) {
+                Row row = rows[idx];
+                if (row == null) {
+                    row = new Row(new int[4], new double[4], 0);
+                    rows[idx] = row;
+                    synchronized (this) {
+                        dirty.add(idx);
+                    }
+                }
+                row.add(jdx, v);
+            }
+        }
+
+        public Int2ObjectMap<Row> capture() {
+            Int2ObjectOpenHashMap<Row> delta = new Int2ObjectOpenHashMap<>(dirty.size());
+            for (int i = 0; i < dirty.size(); i++) {
+                int idx = dirty.getInt(i);
+                Row row = rows[idx];
+                delta.put(idx, new Row(row.idxs, row.vs, row.size));
+            }
+
+            return delta;
+        }
+
+        public void release(Int2ObjectMap<Row> folded) {
+            folded.int2ObjectEntrySet().forEach(e -> {
+                int idx = e.getIntKey();
+                Row row = rows[idx];
+                int n = e.getValue().size;
+                if (row.size == n) {
+                    rows[idx] = null;
+                } else {
+                    rows[idx] = new Row(Arrays.copyOfRange(row.idxs, n, row.idxs.length), Arrays.copyOfRange(row.vs, n, row.vs.length), row.size - n);
+                }
+            });
+
+            IntArrayList newDirty = new IntArrayList();
+            for (int i = 0; i < dirty.size(); i++) {
+                int idx = dirty.getInt(i);
+                if (rows[idx] != null) {
+                    newDirty.add(idx);
+                }
+            }
+            dirty = newDirty;
+        }
+    }
+
+    /**
+     * Immutable view of the base and the buffers.
+     */
+    private static class Snapshot<U, I> extends AbstractFastPreferenceData<U, I, Void> {
+
+        private final FastPreferenceData<U, I, Void> base;
+        private final Int2ObjectMap<Row> uDelta;
+        private final Int2ObjectMap<Row> iDelta;
+        private final int numPreferences;
+
+        public Snapshot(FastPreferenceData<U, I, Void> base, Int2ObjectMap<Row> uDelta, Int2ObjectMap<Row> iDelta) {
+            super(base, base);
+            this.base = base;
+            this.uDelta = uDelta;
+            this.iDelta = iDelta;
+            this.numPreferences = base.numPreferences() + uDelta.values().stream().mapToInt(row -> row.size).sum();
+        }
+
+        @Override
+        public int numUsers(int iidx) {
+            Row row = iDelta.get(iidx);
+            return base.numUsers(iidx) + (row == null ? 0 : row.size);
+        }
+
+        @Override
+        public int numItems(int uidx) {
+            Row row = uDelta.get(uidx);
+            return base.numItems(uidx) + (row == null ? 0 : row.size);
+        }
+
+        @Override
+        public Stream<IdxPref<Void>> getUidxPreferences(int uidx) {
+            return getPreferences(base.getUidxPreferences(uidx), uDelta.get(uidx));
+        }
+
+        @Override
+        public Stream<IdxPref<Void>> getIidxPreferences(int iidx) {
+            return getPreferences(base.getIidxPreferences(iidx), iDelta.get(iidx));
+        }
+
+        private static Stream<IdxPref<Void>> getPreferences(Stream<IdxPref<Void>> basePrefs, Row row) {
+            if (row == null) {
+                return basePrefs;
+            }
+            return Stream.concat(basePrefs, IntStream.range(0, row.size)
+                    .mapToObj(j -> new IdxPref<>(row.idxs[j], row.vs[j], null)));
+        }
+
+        @Override
+        public IntIterator getUidxIidxs(int uidx) {
+            return getIdxs(base.getUidxIidxs(uidx), uDelta.get(uidx));
+        }
+
+        @Override
+        public DoubleIterator getUidxVs(int uidx) {
+            return getVs(base.getUidxVs(uidx), uDelta.get(uidx));
+        }
+
+        @Override
+        public IntIterator getIidxUidxs(int iidx) {
+            return getIdxs(base.getIidxUidxs(iidx), iDelta.get(iidx));
+        }
+
+        @Override
+        public DoubleIterator getIidxVs(int iidx) {
+            return getVs(base.getIidxVs(iidx), iDelta.get(iidx));
+        }
+
+        private static IntIterator getIdxs(IntIterator baseIdxs, Row row) {
+            if (row == null) {
+                return baseIdxs;
+            }
+            return IntIterators.concat(new IntIterator[]{baseIdxs, IntIterators.wrap(row.idxs, 0, row.size)});
+        }
+
+        private static DoubleIterator getVs(DoubleIterator baseVs, Row row) {
+            if (row == null) {
+                return baseVs;
+            }
+            return DoubleIterators.concat(new DoubleIterator[]{baseVs, DoubleIterators.wrap(row.vs, 0, row.size)});
+        }
+
+        @Override
+        public void forEachUidxPref(int uidx, IntDoubleConsumer consumer) {
+            base.forEachUidxPref(uidx, consumer);
+            forEachPref(uDelta.get(uidx), consumer);
+        }
+
+        @Override
+        public void forEachIidxPref(int iidx, IntDoubleConsumer consumer) {
+            base.forEachIidxPref(iidx, consumer);
+            forEachPref(iDelta.get(iidx), consumer);
+        }
+
+        private static void forEachPref(Row row, IntDoubleConsumer consumer) {
+            if (row == null) {
+                return;
+            }
+            for (int j = 0; j < row.size; j++) {
+                consumer.accept(row.idxs[j], row.vs[j]);
+            }
+        }
+
+        @Override
+        public int numPreferences() {
+            return numPreferences;
+        }
+
+        @Override
+        public IntStream getUidxWithPreferences() {
+            return IntStream.range(0, numUsers())
+                    .filter(uidx -> numItems(uidx) > 0);
+        }
+
+        @Override
+        public IntStream getIidxWithPreferences() {
+            return IntStream.range(0, numItems())
+                    .filter(iidx -> numUsers(iidx) > 0);
+        }
+    }
+
+    /**
+     * Creates an empty store.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return an empty store
+     */
+    public static <U, I> AppendablePreferenceStore<U, I> create(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        return new AppendablePreferenceStore<>(CSRFastPreferenceData.create(Collections.<PreferenceTriples<Void>>emptyList(), uIndex, iIndex));
+    }
+
+    /**
+     * Creates a store with initial preferences. Other information of the
+     * preferences is discarded.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param data initial preferences
+     * @return a store with the initial preferences
+     */
+    public static <U, I> AppendablePreferenceStore<U, I> create(FastPreferenceData<U, I, ?> data) {
+        PreferenceTriples<Void> triples = new PreferenceTriples<>();
+        data.getUidxWithPreferences().forEach(uidx -> {
+            data.forEachUidxPref(uidx, (iidx, v) -> triples.add(uidx, iidx, v, null));
+        });
+
+        return new AppendablePreferenceStore<>(CSRFastPreferenceData.create(Collections.singletonList(triples), data, data));
+    }
+}
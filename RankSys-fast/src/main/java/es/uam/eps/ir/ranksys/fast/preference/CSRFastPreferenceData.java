@@ -0,0 +1,632 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.core.util.ChunkedLineReader;
+import static es.uam.eps.ir.ranksys.core.util.FastStringSplitter.split;
+import static es.uam.eps.ir.ranksys.core.util.parsing.Parsers.parseLong;
+import es.uam.eps.ir.ranksys.core.util.parsing.DoubleParser;
+import es.uam.eps.ir.ranksys.core.util.parsing.Parser;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.IdxPermutation;
+import es.uam.eps.ir.ranksys.fast.index.LongFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.LongFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.SimpleFastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.IdxIndex;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterators;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Collections;
+import java.util.List;
+import static java.util.stream.Collectors.toList;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Implementation of FastPreferenceData backed by primitive arrays in
+ * compressed sparse row (CSR) layout. Preferences are stored both user-wise
+ * and item-wise: for each direction, an array of offsets delimits the
+ * preferences of every user/item in the arrays of indexes and values, sorted
+ * by index. Other information is only stored when present in the input.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ * @param <O> type of other information for preferences
+ */
+public class CSRFastPreferenceData<U, I, O> extends AbstractFastPreferenceData<U, I, O> {
+
+    private final int[] uOffsets;
+    private final int[] uIdxs;
+    private final double[] uVs;
+    private final O[] uOs;
+    private final int[] iOffsets;
+    private final int[] iIdxs;
+    private final double[] iVs;
+    private final O[] iOs;
+
+    /**
+     * Constructor. The preferences of each user and item are expected to be
+     * sorted by index.
+     *
+     * @param uOffsets offsets of the preferences of each user, of length numUsers + 1
+     * @param uIdxs item indexes of the preferences by user
+     * @param uVs values of the preferences by user
+     * @param uOs other information of the preferences by user, null if not available
+     * @param iOffsets offsets of the preferences of each item, of length numItems + 1
+     * @param iIdxs user indexes of the preferences by item
+     * @param iVs values of the preferences by item
+     * @param iOs other information of the preferences by item, null if not available
+     * @param uIndex user index
+     * @param iIndex item index
+     */
+    protected CSRFastPreferenceData(int[] uOffsets, int[] uIdxs, double[] uVs, O[] uOs, int[] iOffsets, int[] iIdxs, double[] iVs, O[] iOs, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        super(uIndex, iIndex);
+        this.uOffsets = uOffsets;
+        this.uIdxs = uIdxs;
+        this.uVs = uVs;
+        this.uOs = uOs;
+        this.iOffsets = iOffsets;
+        this.iIdxs = iIdxs;
+        this.iVs = iVs;
+        this.iOs = iOs;
+    }
+
+    /**
+     * Constructor that shares the preferences of another CSR preference data,
+     * with other indexes of the same users and items.
+     *
+     * @param data CSR preference data
+     * @param uIndex user index
+     * @param iIndex item index
+     */
+    protected CSRFastPreferenceData(CSRFastPreferenceData<U, I, O> data, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        this(data.uOffsets, data.uIdxs, data.uVs, data.uOs, data.iOffsets, data.iIdxs, data.iVs, data.iOs, uIndex, iIndex);
+    }
+
+    @Override
+    public int numUsers(int iidx) {
+        return iOffsets[iidx + 1] - iOffsets[iidx];
+    }
+
+    @Override
+    public int numItems(int uidx) {
+        return uOffsets[uidx + 1] - uOffsets[uidx];
+    }
+
+    @Override
+    public Stream<IdxPref<O>> getUidxPreferences(int uidx) {
+        return getPreferences(uOffsets, uIdxs, uVs, uOs, uidx);
+    }
+
+    @Override
+    public Stream<IdxPref<O>> getIidxPreferences(int iidx) {
+        return getPreferences(iOffsets, iIdxs, iVs, iOs, iidx);
+    }
+
+    private static <O> Stream<IdxPref<O>> getPreferences(int[] offsets, int[] idxs, double[] vs, O[] os, int idx) {
+        if (os == null) {
+            return IntStream.range(offsets[idx], offsets[idx + 1])
+                    .mapToObj(j -> new IdxPref<>(idxs[j], vs[j], null));
+        } else {
+            return IntStream.range(offsets[idx], offsets[idx + 1])
+                    .mapToObj(j -> new IdxPref<>(idxs[j], vs[j], os[j]));
+        }
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        return IntIterators.wrap(uIdxs, uOffsets[uidx], numItems(uidx));
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        return DoubleIterators.wrap(uVs, uOffsets[uidx], numItems(uidx));
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        return IntIterators.wrap(iIdxs, iOffsets[iidx], numUsers(iidx));
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        return DoubleIterators.wrap(iVs, iOffsets[iidx], numUsers(iidx));
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer consumer) {
+        for (int j = uOffsets[uidx]; j < uOffsets[uidx + 1]; j++) {
+            consumer.accept(uIdxs[j], uVs[j]);
+        }
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer consumer) {
+        for (int j = iOffsets[iidx]; j < iOffsets[iidx + 1]; j++) {
+            consumer.accept(iIdxs[j], iVs[j]);
+        }
+    }
+
+    @Override
+    public int numPreferences() {
+        return uIdxs.length;
+    }
+
+    @Override
+    public boolean hasSortedRows() {
+        return true;
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences() {
+        return IntStream.range(0, numUsers())
+                .filter(uidx -> numItems(uidx) > 0);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences() {
+        return IntStream.range(0, numItems())
+                .filter(iidx -> numUsers(iidx) > 0);
+    }
+
+    @Override
+    public int numUsersWithPreferences() {
+        return (int) getUidxWithPreferences().count();
+    }
+
+    @Override
+    public int numItemsWithPreferences() {
+        return (int) getIidxWithPreferences().count();
+    }
+
+    /**
+     * Creates a CSR preference data from lists of user-item-value triples.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param uidxs user indexes of the preferences
+     * @param iidxs item indexes of the preferences
+     * @param vs values of the preferences
+     * @param os other information of the preferences, null if not available
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return a CSR preference data
+     */
+    public static <U, I, O> CSRFastPreferenceData<U, I, O> create(IntArrayList uidxs, IntArrayList iidxs, DoubleArrayList vs, ObjectArrayList<O> os, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        return create(Collections.singletonList(new PreferenceTriples<>(uidxs, iidxs, vs, os)), uIndex, iIndex);
+    }
+
+    /**
+     * Creates a CSR preference data from consecutive chunks of preferences. A
+     * first pass counts the number of preferences of each user and item, a
+     * second one places the preferences in the arrays, and finally the
+     * preferences of each user and item are sorted by index.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param chunks lists of preferences
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return a CSR preference data
+     */
+    @SuppressWarnings("unchecked")
+    public static <U, I, O> CSRFastPreferenceData<U, I, O> create(List<PreferenceTriples<O>> chunks, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        int numPreferences = 0;
+        boolean hasOthers = false;
+        int[] uOffsets = new int[uIndex.numUsers() + 1];
+        int[] iOffsets = new int[iIndex.numItems() + 1];
+        for (PreferenceTriples<O> chunk : chunks) {
+            int[] u = chunk.getUidxs().elements();
+            int[] i = chunk.getIidxs().elements();
+            for (int j = 0; j < chunk.size(); j++) {
+                uOffsets[u[j] + 1]++;
+                iOffsets[i[j] + 1]++;
+            }
+            numPreferences += chunk.size();
+            hasOthers |= chunk.getOs() != null;
+        }
+        for (int uidx = 0; uidx < uIndex.numUsers(); uidx++) {
+            uOffsets[uidx + 1] += uOffsets[uidx];
+        }
+        for (int iidx = 0; iidx < iIndex.numItems(); iidx++) {
+            iOffsets[iidx + 1] += iOffsets[iidx];
+        }
+
+        int[] uIdxs = new int[numPreferences];
+        double[] uVs = new double[numPreferences];
+        O[] uOs = hasOthers ? (O[]) new Object[numPreferences] : null;
+        int[] iIdxs = new int[numPreferences];
+        double[] iVs = new double[numPreferences];
+        O[] iOs = hasOthers ? (O[]) new Object[numPreferences] : null;
+
+        int[] uPos = new int[uIndex.numUsers()];
+        System.arraycopy(uOffsets, 0, uPos, 0, uPos.length);
+        int[] iPos = new int[iIndex.numItems()];
+        System.arraycopy(iOffsets, 0, iPos, 0, iPos.length);
+        for (PreferenceTriples<O> chunk : chunks) {
+            int[] u = chunk.getUidxs().elements();
+            int[] i = chunk.getIidxs().elements();
+            double[] v = chunk.getVs().elements();
+            Object[] o = chunk.getOs() == null ? null : chunk.getOs().elements();
+            for (int j = 0; j < chunk.size(); j++) {
+                int up = uPos[u[j]]++;
+                uIdxs[up] = i[j];
+                uVs[up] = v[j];
+                int ip = iPos[i[j]]++;
+                iIdxs[ip] = u[j];
+                iVs[ip] = v[j];
+                if (o != null) {
+                    uOs[up] = (O) o[j];
+                    iOs[ip] = (O) o[j];
+                }
+            }
+        }
+
+        sortRows(uOffsets, uIdxs, uVs, uOs);
+        sortRows(iOffsets, iIdxs, iVs, iOs);
+
+        return new CSRFastPreferenceData<>(uOffsets, uIdxs, uVs, uOs, iOffsets, iIdxs, iVs, iOs, uIndex, iIndex);
+    }
+
+    private static <O> void sortRows(int[] offsets, int[] idxs, double[] vs, O[] os) {
+        IntStream.range(0, offsets.length - 1).parallel().forEach(idx -> {
+            int from = offsets[idx];
+            int to = offsets[idx + 1];
+            int j = from + 1;
+            while (j < to && idxs[j - 1] <= idxs[j]) {
+                j++;
+            }
+            if (j >= to) {
+                return;
+            }
+            Arrays.quickSort(from, to, new AbstractIntComparator() {
+                @Override
+                public int compare(int a, int b) {
+                    return Integer.compare(idxs[a], idxs[b]);
+                }
+            }, (a, b) -> {
+                int i = idxs[a];
+                idxs[a] = idxs[b];
+                idxs[b] = i;
+                double v = vs[a];
+                vs[a] = vs[b];
+                vs[b] = v;
+                if (os != null) {
+                    O o = os[a];
+                    os[a] = os[b];
+                    os[b] = o;
+                }
+            });
+        });
+    }
+
+    /**
+     * Creates a CSR preference data with the same preferences as another
+     * fast preference data.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param data preference data to be copied
+     * @return a CSR preference data
+     */
+    public static <U, I, O> CSRFastPreferenceData<U, I, O> create(FastPreferenceData<U, I, O> data) {
+        PreferenceTriples<O> triples = new PreferenceTriples<>();
+        data.getUidxWithPreferences().forEach(uidx -> {
+            data.getUidxPreferences(uidx).forEach(iv -> triples.add(uidx, iv.idx, iv.v, iv.o));
+        });
+
+        return create(Collections.singletonList(triples), data, data);
+    }
+
+    /**
+     * Creates a CSR preference data with the same preferences as another
+     * fast preference data, but with permuted user and item indexes (see
+     * {@link IdxPermutation}).
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param data preference data to be copied
+     * @param uPerm permutation of the user indexes
+     * @param iPerm permutation of the item indexes
+     * @return a CSR preference data with the new indexes
+     */
+    public static <U, I, O> CSRFastPreferenceData<U, I, O> create(FastPreferenceData<U, I, O> data, IdxPermutation uPerm, IdxPermutation iPerm) {
+        PreferenceTriples<O> triples = new PreferenceTriples<>();
+        for (int uidx = 0; uidx < uPerm.size(); uidx++) {
+            int nuidx = uidx;
+            data.getUidxPreferences(uPerm.oldIdx(uidx)).forEach(iv -> triples.add(nuidx, iPerm.newIdx(iv.idx), iv.v, iv.o));
+        }
+
+        return create(Collections.singletonList(triples), uPerm.permute((FastUserIndex<U>) data), iPerm.permute((FastItemIndex<I>) data));
+    }
+
+    /**
+     * Load preferences from a file.
+     *
+     * Each line is a different preference, with "::"-separated fields indicating user, item, weight and other information.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param path path of the input file
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parse
+     * @param vParser other info parser
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return a CSR FastPreferenceData with the information read
+     * @throws IOException when path does not exists of IO error
+     */
+    public static <U, I, O> CSRFastPreferenceData<U, I, O> load(String path, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        return load(new FileInputStream(path), uParser, iParser, dp, vParser, uIndex, iIndex);
+    }
+
+    /**
+     * Load preferences from an input stream.
+     *
+     * Each line is a different preference, with "::"-separated fields indicating user, item, weight and other information.
+     * Preferences of users or items not contained in the indexes are ignored.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param in input stream to read from
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parse
+     * @param vParser other info parser
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return a CSR FastPreferenceData with the information read
+     * @throws IOException when path does not exists of IO error
+     */
+    public static <U, I, O> CSRFastPreferenceData<U, I, O> load(InputStream in, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in))) {
+            return create(Collections.singletonList(PreferenceTriples.parse(reader.lines(), uParser, iParser, dp, vParser, uIndex, iIndex)), uIndex, iIndex);
+        }
+    }
+
+    /**
+     * Load preferences from a file in parallel. The file is split in chunks
+     * aligned on newlines that are parsed by different threads (see
+     * {@link ChunkedLineReader}), and the chunks are then merged in the
+     * order of the file.
+     *
+     * Each line is a different preference, with "::"-separated fields indicating user, item, weight and other information.
+     * Preferences of users or items not contained in the indexes are ignored.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param path path of the input file
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parse
+     * @param vParser other info parser
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return a CSR FastPreferenceData with the information read
+     * @throws IOException when path does not exists of IO error
+     */
+    public static <U, I, O> CSRFastPreferenceData<U, I, O> loadParallel(String path, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        List<PreferenceTriples<O>> chunks = ChunkedLineReader.read(path, lines -> PreferenceTriples.parse(lines, uParser, iParser, dp, vParser, uIndex, iIndex));
+
+        return create(chunks, uIndex, iIndex);
+    }
+
+    /**
+     * Loads preferences with long user and item identifiers from a file,
+     * creating both the indexes and the preference data in a single parallel
+     * pass over the file. The user and item indexes, available through
+     * {@link LongCSRFastPreferenceData#getUserIndex()} and
+     * {@link LongCSRFastPreferenceData#getItemIndex()}, are sorted arrays of
+     * the identifiers in the file (see {@link LongFastUserIndex} and
+     * {@link LongFastItemIndex}).
+     *
+     * Each line is a different preference, with "::"-separated fields indicating user, item and weight.
+     *
+     * @param path path of the input file
+     * @param dp double parse
+     * @return a CSR FastPreferenceData with the information read and its indexes
+     * @throws IOException when path does not exists of IO error
+     */
+    public static LongCSRFastPreferenceData loadLong(String path, DoubleParser dp) throws IOException {
+        List<LongTriples> chunks = ChunkedLineReader.read(path, lines -> {
+            LongTriples triples = new LongTriples();
+            lines.forEach(l -> {
+                CharSequence[] tokens = split(l, "::", 4);
+                triples.us.add(parseLong(tokens[0]));
+                triples.is.add(parseLong(tokens[1]));
+                triples.vs.add(tokens.length >= 3 ? dp.parse(tokens[2]) : dp.parse(null));
+            });
+            return triples;
+        });
+
+        int numPreferences = chunks.stream().mapToInt(triples -> triples.us.size()).sum();
+        long[] users = new long[numPreferences];
+        long[] items = new long[numPreferences];
+        int j = 0;
+        for (LongTriples triples : chunks) {
+            System.arraycopy(triples.us.elements(), 0, users, j, triples.us.size());
+            System.arraycopy(triples.is.elements(), 0, items, j, triples.is.size());
+            j += triples.us.size();
+        }
+        LongFastUserIndex uIndex = LongFastUserIndex.create(users, numPreferences);
+        LongFastItemIndex iIndex = LongFastItemIndex.create(items, numPreferences);
+
+        List<PreferenceTriples<Void>> idxChunks = chunks.parallelStream()
+                .map(triples -> {
+                    int n = triples.us.size();
+                    IntArrayList uidxs = new IntArrayList(n);
+                    IntArrayList iidxs = new IntArrayList(n);
+                    for (int k = 0; k < n; k++) {
+                        uidxs.add(uIndex.user2uidx(triples.us.getLong(k)));
+                        iidxs.add(iIndex.item2iidx(triples.is.getLong(k)));
+                    }
+                    return new PreferenceTriples<Void>(uidxs, iidxs, triples.vs, null);
+                })
+                .collect(toList());
+
+        return new LongCSRFastPreferenceData(create(idxChunks, uIndex, iIndex), uIndex, iIndex);
+    }
+
+    /**
+     * Loads preferences from a file, discovering the users and items while
+     * parsing it. Indexes are assigned on the fly in order of first
+     * appearance or, optionally, in decreasing order of number of preferences
+     * so that the rows that are accessed most often are close in memory. The
+     * file is read in a single parallel pass: each chunk discovers its own
+     * users and items, which are then merged in the order of the file. The
+     * user and item indexes are available through the returned data.
+     *
+     * Each line is a different preference, with "::"-separated fields indicating user, item, weight and other information.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param path path of the input file
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parse
+     * @param vParser other info parser
+     * @param byFrequency whether indexes are sorted by decreasing number of preferences
+     * @return a CSR FastPreferenceData with the information read
+     * @throws IOException when path does not exists of IO error
+     */
+    public static <U, I, O> CSRFastPreferenceData<U, I, O> loadIndexing(String path, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser, boolean byFrequency) throws IOException {
+        List<IndexingChunk<U, I, O>> chunks = ChunkedLineReader.read(path, lines -> {
+            IndexingChunk<U, I, O> chunk = new IndexingChunk<>();
+            lines.forEach(l -> {
+                CharSequence[] tokens = split(l, "::", 4);
+                U user = uParser.parse(tokens[0]);
+                I item = iParser.parse(tokens[1]);
+                double value;
+                if (tokens.length >= 3) {
+                    value = dp.parse(tokens[2]);
+                } else {
+                    value = dp.parse(null);
+                }
+                O other;
+                if (tokens.length == 4) {
+                    other = vParser.parse(tokens[3]);
+                } else {
+                    other = vParser.parse(null);
+                }
+
+                chunk.triples.add(chunk.users.add(user), chunk.items.add(item), value, other);
+            });
+            return chunk;
+        });
+
+        IdxIndex<U> users = new IdxIndex<>();
+        IdxIndex<I> items = new IdxIndex<>();
+        for (IndexingChunk<U, I, O> chunk : chunks) {
+            chunk.uMap = new int[chunk.users.size()];
+            for (int l = 0; l < chunk.uMap.length; l++) {
+                chunk.uMap[l] = users.add(chunk.users.get(l));
+            }
+            chunk.iMap = new int[chunk.items.size()];
+            for (int l = 0; l < chunk.iMap.length; l++) {
+                chunk.iMap[l] = items.add(chunk.items.get(l));
+            }
+        }
+
+        IdxPermutation uPerm = IdxPermutation.of(IntStream.range(0, users.size()).toArray());
+        IdxPermutation iPerm = IdxPermutation.of(IntStream.range(0, items.size()).toArray());
+        if (byFrequency) {
+            int[] uCounts = new int[users.size()];
+            int[] iCounts = new int[items.size()];
+            for (IndexingChunk<U, I, O> chunk : chunks) {
+                int[] u = chunk.triples.getUidxs().elements();
+                int[] i = chunk.triples.getIidxs().elements();
+                for (int j = 0; j < chunk.triples.size(); j++) {
+                    uCounts[chunk.uMap[u[j]]]++;
+                    iCounts[chunk.iMap[i[j]]]++;
+                }
+            }
+            uPerm = IdxPermutation.byFrequency(uCounts);
+            iPerm = IdxPermutation.byFrequency(iCounts);
+            for (IndexingChunk<U, I, O> chunk : chunks) {
+                for (int l = 0; l < chunk.uMap.length; l++) {
+                    chunk.uMap[l] = uPerm.newIdx(chunk.uMap[l]);
+                }
+                for (int l = 0; l < chunk.iMap.length; l++) {
+                    chunk.iMap[l] = iPerm.newIdx(chunk.iMap[l]);
+                }
+            }
+        }
+
+        List<PreferenceTriples<O>> idxChunks = chunks.parallelStream()
+                .map(chunk -> {
+                    int[] u = chunk.triples.getUidxs().elements();
+                    int[] i = chunk.triples.getIidxs().elements();
+                    for (int j = 0; j < chunk.triples.size(); j++) {
+                        u[j] = chunk.uMap[u[j]];
+                        i[j] = chunk.iMap[i[j]];
+                    }
+                    return chunk.triples;
+                })
+                .collect(toList());
+
+        IdxPermutation up = uPerm;
+        IdxPermutation ip = iPerm;
+        SimpleFastUserIndex<U> uIndex = SimpleFastUserIndex.create(IntStream.range(0, up.size()).mapToObj(uidx -> users.get(up.oldIdx(uidx))));
+        SimpleFastItemIndex<I> iIndex = SimpleFastItemIndex.create(IntStream.range(0, ip.size()).mapToObj(iidx -> items.get(ip.oldIdx(iidx))));
+
+        return create(idxChunks, uIndex, iIndex);
+    }
+
+    private static class IndexingChunk<U, I, O> {
+
+        private final IdxIndex<U> users = new IdxIndex<>();
+        private final IdxIndex<I> items = new IdxIndex<>();
+        private final PreferenceTriples<O> triples = new PreferenceTriples<>();
+        private int[] uMap;
+        private int[] iMap;
+    }
+
+    private static class LongTriples {
+
+        private final LongArrayList us = new LongArrayList();
+        private final LongArrayList is = new LongArrayList();
+        private final DoubleArrayList vs = new DoubleArrayList();
+    }
+
+}
@@ -0,0 +1,399 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.core.util.parsing.DoubleParser;
+import es.uam.eps.ir.ranksys.core.util.parsing.Parser;
+import es.uam.eps.ir.ranksys.core.util.parsing.Parsers;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import it.unimi.dsi.fastutil.bytes.ByteArrayList;
+import it.unimi.dsi.fastutil.doubles.AbstractDoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterators;
+import it.unimi.dsi.fastutil.ints.AbstractIntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * FastPreferenceData with compressed lists of preferences, suited for
+ * implicit feedback data. The preferences of each user and item are sorted
+ * by index and the gaps between consecutive indexes are stored as
+ * variable-byte integers (7 bits per byte, the highest bit marking
+ * continuation). When all preferences have the same value, only that value is
+ * stored; otherwise the values are kept in arrays parallel to the sorted
+ * lists. Lists are decoded on the fly by the iteration methods. Other
+ * information of the preferences is not stored.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class CompressedFastPreferenceData<U, I> extends AbstractFastPreferenceData<U, I, Void> {
+
+    private final PostingLists uLists;
+    private final PostingLists iLists;
+
+    /**
+     * Constructor.
+     *
+     * @param uLists compressed lists of preferences by user
+     * @param iLists compressed lists of preferences by item
+     * @param uIndex user index
+     * @param iIndex item index
+     */
+    protected CompressedFastPreferenceData(PostingLists uLists, PostingLists iLists, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        super(uIndex, iIndex);
+        this.uLists = uLists;
+        this.iLists = iLists;
+    }
+
+    @Override
+    public int numUsers(int iidx) {
+        return iLists.length(iidx);
+    }
+
+    @Override
+    public int numItems(int uidx) {
+        return uLists.length(uidx);
+    }
+
+    @Override
+    public Stream<IdxPref<Void>> getUidxPreferences(int uidx) {
+        return uLists.getPreferences(uidx);
+    }
+
+    @Override
+    public Stream<IdxPref<Void>> getIidxPreferences(int iidx) {
+        return iLists.getPreferences(iidx);
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        return uLists.getIdxs(uidx);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        return uLists.getVs(uidx);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        return iLists.getIdxs(iidx);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        return iLists.getVs(iidx);
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer consumer) {
+        uLists.forEachPref(uidx, consumer);
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer consumer) {
+        iLists.forEachPref(iidx, consumer);
+    }
+
+    @Override
+    public int numPreferences() {
+        return uLists.numPreferences();
+    }
+
+    @Override
+    public boolean hasSortedRows() {
+        return true;
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences() {
+        return IntStream.range(0, numUsers())
+                .filter(uidx -> numItems(uidx) > 0);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences() {
+        return IntStream.range(0, numItems())
+                .filter(iidx -> numUsers(iidx) > 0);
+    }
+
+    /**
+     * Variable-byte encoded lists of sorted indexes, with their values.
+     */
+    protected static class PostingLists {
+
+        private final int[] offsets;
+        private final int[] byteOffsets;
+        private final byte[] bytes;
+        private final double[] vs;
+        private final double v;
+
+        /**
+         * Constructor.
+         *
+         * @param offsets offsets of each list in the values, of length n + 1
+         * @param byteOffsets offsets of each list in the bytes, of length n + 1
+         * @param bytes variable-byte encoded gaps of the lists
+         * @param vs values of the lists, null if constant
+         * @param v constant value, ignored if vs is not null
+         */
+        public PostingLists(int[] offsets, int[] byteOffsets, byte[] bytes, double[] vs, double v) {
+            this.offsets = offsets;
+            this.byteOffsets = byteOffsets;
+            this.bytes = bytes;
+            this.vs = vs;
+            this.v = v;
+        }
+
+        /**
+         * Returns the number of preferences.
+         *
+         * @return number of preferences
+         */
+        public int numPreferences() {
+            return offsets[offsets.length - 1];
+        }
+
+        /**
+         * Returns the length of a list.
+         *
+         * @param idx index of the list
+         * @return length of the list
+         */
+        public int length(int idx) {
+            return offsets[idx + 1] - offsets[idx];
+        }
+
+        /**
+         * Returns the preferences of a list.
+         *
+         * @param idx index of the list
+         * @return stream of preferences
+         */
+        public Stream<IdxPref<Void>> getPreferences(int idx) {
+            int[] idxs = new int[length(idx)];
+            IntIterator it = getIdxs(idx);
+            for (int j = 0; j < idxs.length; j++) {
+                idxs[j] = it.nextInt();
+            }
+            int offset = offsets[idx];
+
+            if (vs == null) {
+                return Arrays.stream(idxs).mapToObj(j -> new IdxPref<>(j, v, null));
+            } else {
+                return IntStream.range(0, idxs.length).mapToObj(j -> new IdxPref<>(idxs[j], vs[offset + j], null));
+            }
+        }
+
+        /**
+         * Returns an iterator that decodes the indexes of a list.
+         *
+         * @param idx index of the list
+         * @return iterator of indexes
+         */
+        public IntIterator getIdxs(int idx) {
+            return new AbstractIntIterator() {
+                private int pos = byteOffsets[idx];
+                private int remaining = length(idx);
+                private int prev = 0;
+
+                @Override
+                public boolean hasNext() {
+                    return remaining > 0;
+                }
+
+                @Override
+                public int nextInt() {
+                    int gap = 0;
+                    int shift = 0;
+                    byte b;
+                    do {
+                        b = bytes[pos++];
+                        gap |= (b & 0x7F) << shift;
+                        shift += 7;
+                    } while (b < 0);
+                    remaining--;
+                    prev += gap;
+                    return prev;
+                }
+            };
+        }
+
+        /**
+         * Returns an iterator of the values of a list.
+         *
+         * @param idx index of the list
+         * @return iterator of values
+         */
+        public DoubleIterator getVs(int idx) {
+            if (vs == null) {
+                return new AbstractDoubleIterator() {
+                    private int remaining = length(idx);
+
+                    @Override
+                    public boolean hasNext() {
+                        return remaining > 0;
+                    }
+
+                    @Override
+                    public double nextDouble() {
+                        remaining--;
+                        return v;
+                    }
+                };
+            } else {
+                return DoubleIterators.wrap(vs, offsets[idx], length(idx));
+            }
+        }
+
+        /**
+         * Decodes a list and applies a consumer to its index-value pairs.
+         *
+         * @param idx index of the list
+         * @param consumer consumer of index-value pairs
+         */
+        public void forEachPref(int idx, IntDoubleConsumer consumer) {
+            int pos = byteOffsets[idx];
+            int prev = 0;
+            for (int j = offsets[idx]; j < offsets[idx + 1]; j++) {
+                int gap = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = bytes[pos++];
+                    gap |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                prev += gap;
+                consumer.accept(prev, vs == null ? v : vs[j]);
+            }
+        }
+
+        /**
+         * Encodes lists of indexes and values.
+         *
+         * @param n number of lists
+         * @param lengths length of each list
+         * @param idxsGetter iterator of the indexes of each list
+         * @param vsGetter iterator of the values of each list
+         * @return compressed lists
+         */
+        public static PostingLists encode(int n, int[] lengths, IntFunction<IntIterator> idxsGetter, IntFunction<DoubleIterator> vsGetter) {
+            int[] offsets = new int[n + 1];
+            for (int idx = 0; idx < n; idx++) {
+                offsets[idx + 1] = offsets[idx] + lengths[idx];
+            }
+            int[] byteOffsets = new int[n + 1];
+            ByteArrayList bytes = new ByteArrayList(offsets[n]);
+            double[] vs = new double[offsets[n]];
+            boolean constant = true;
+
+            for (int idx = 0; idx < n; idx++) {
+                int length = lengths[idx];
+                if (length > 0) {
+                    int[] idxs = new int[length];
+                    double[] rowVs = new double[length];
+                    IntIterator iit = idxsGetter.apply(idx);
+                    DoubleIterator vit = vsGetter.apply(idx);
+                    long[] keys = new long[length];
+                    for (int j = 0; j < length; j++) {
+                        idxs[j] = iit.nextInt();
+                        rowVs[j] = vit.nextDouble();
+                        keys[j] = ((long) idxs[j] << 32) | j;
+                    }
+                    Arrays.sort(keys);
+
+                    int prev = 0;
+                    for (int j = 0; j < length; j++) {
+                        int k = (int) keys[j];
+                        int gap = idxs[k] - prev;
+                        prev = idxs[k];
+                        while ((gap & ~0x7F) != 0) {
+                            bytes.add((byte) ((gap & 0x7F) | 0x80));
+                            gap >>>= 7;
+                        }
+                        bytes.add((byte) gap);
+
+                        double v = rowVs[k];
+                        vs[offsets[idx] + j] = v;
+                        constant &= v == vs[0];
+                    }
+                }
+                byteOffsets[idx + 1] = bytes.size();
+            }
+            bytes.trim();
+
+            if (constant) {
+                return new PostingLists(offsets, byteOffsets, bytes.elements(), null, vs.length == 0 ? 1.0 : vs[0]);
+            } else {
+                return new PostingLists(offsets, byteOffsets, bytes.elements(), vs, Double.NaN);
+            }
+        }
+    }
+
+    /**
+     * Creates a compressed preference data with the same preferences as
+     * another fast preference data. Other information is discarded.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param data preference data to be compressed
+     * @return a compressed preference data
+     */
+    public static <U, I> CompressedFastPreferenceData<U, I> create(FastPreferenceData<U, I, ?> data) {
+        int[] uLengths = new int[data.numUsers()];
+        data.getUidxWithPreferences().forEach(uidx -> uLengths[uidx] = data.numItems(uidx));
+        int[] iLengths = new int[data.numItems()];
+        data.getIidxWithPreferences().forEach(iidx -> iLengths[iidx] = data.numUsers(iidx));
+
+        PostingLists uLists = PostingLists.encode(data.numUsers(), uLengths, data::getUidxIidxs, data::getUidxVs);
+        PostingLists iLists = PostingLists.encode(data.numItems(), iLengths, data::getIidxUidxs, data::getIidxVs);
+
+        return new CompressedFastPreferenceData<>(uLists, iLists, data, data);
+    }
+
+    /**
+     * Load preferences from a file and compresses them.
+     *
+     * Each line is a different preference, with "::"-separated fields indicating user, item, weight and other information.
+     * Preferences of users or items not contained in the indexes are ignored.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param path path of the input file
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parse
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return a compressed FastPreferenceData with the information read
+     * @throws IOException when path does not exists of IO error
+     */
+    public static <U, I> CompressedFastPreferenceData<U, I> load(String path, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        return create(CSRFastPreferenceData.loadParallel(path, uParser, iParser, dp, Parsers.vp, uIndex, iIndex));
+    }
+}
@@ -20,6 +20,11 @@ package es.uam.eps.ir.ranksys.fast.preference;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.core.preference.PreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import static es.uam.eps.ir.ranksys.fast.utils.StreamIterators.doubleIterator;
+import static es.uam.eps.ir.ranksys.fast.utils.StreamIterators.intIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -80,4 +85,82 @@ public interface FastPreferenceData<U, I, V> extends PreferenceData<U, I, V>, Fa
      * @return preferences of the item
      */
     public Stream<IdxPref<V>> getIidxPreferences(int iidx);
+
+    /**
+     * Returns the item indexes of the preferences of a user, in the same
+     * order as {@link #getUidxVs(int)}.
+     *
+     * @param uidx user index
+     * @return iterator of the item indexes of the preferences of the user
+     */
+    public default IntIterator getUidxIidxs(int uidx) {
+        return intIterator(getUidxPreferences(uidx).mapToInt(iv -> iv.idx));
+    }
+
+    /**
+     * Returns the values of the preferences of a user, in the same
+     * order as {@link #getUidxIidxs(int)}.
+     *
+     * @param uidx user index
+     * @return iterator of the values of the preferences of the user
+     */
+    public default DoubleIterator getUidxVs(int uidx) {
+        return doubleIterator(getUidxPreferences(uidx).mapToDouble(iv -> iv.v));
+    }
+
+    /**
+     * Returns the user indexes of the preferences of an item, in the same
+     * order as {@link #getIidxVs(int)}.
+     *
+     * @param iidx item index
+     * @return iterator of the user indexes of the preferences of the item
+     */
+    public default IntIterator getIidxUidxs(int iidx) {
+        return intIterator(getIidxPreferences(iidx).mapToInt(uv -> uv.idx));
+    }
+
+    /**
+     * Returns the values of the preferences of an item, in the same
+     * order as {@link #getIidxUidxs(int)}.
+     *
+     * @param iidx item index
+     * @return iterator of the values of the preferences of the item
+     */
+    public default DoubleIterator getIidxVs(int iidx) {
+        return doubleIterator(getIidxPreferences(iidx).mapToDouble(uv -> uv.v));
+    }
+
+    /**
+     * Performs an operation on every item index-value pair of the preferences
+     * of a user.
+     *
+     * @param uidx user index
+     * @param consumer operation on item index-value pairs
+     */
+    public default void forEachUidxPref(int uidx, IntDoubleConsumer consumer) {
+        getUidxPreferences(uidx).forEach(iv -> consumer.accept(iv.idx, iv.v));
+    }
+
+    /**
+     * Performs an operation on every user index-value pair of the preferences
+     * of an item.
+     *
+     * @param iidx item index
+     * @param consumer operation on user index-value pairs
+     */
+    public default void forEachIidxPref(int iidx, IntDoubleConsumer consumer) {
+        getIidxPreferences(iidx).forEach(uv -> consumer.accept(uv.idx, uv.v));
+    }
+
+    /**
+     * Checks whether the preferences of every user (item) are returned in
+     * increasing order of item (user) index, which allows merge-based
+     * algorithms such as the ones of
+     * {@link es.uam.eps.ir.ranksys.fast.utils.SortedIntersection}.
+     *
+     * @return true if rows are sorted by index, false if unknown
+     */
+    public default boolean hasSortedRows() {
+        return false;
+    }
 }
@@ -0,0 +1,68 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.fast.index.LongFastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.LongFastUserIndex;
+
+/**
+ * CSR preference data with long user and item identifiers, as loaded by
+ * {@link CSRFastPreferenceData#loadLong(String, es.uam.eps.ir.ranksys.core.util.parsing.DoubleParser)}.
+ * It gives access to the typed indexes, whose primitive lookups
+ * ({@link LongFastUserIndex#user2uidx(long)},
+ * {@link LongFastUserIndex#uidx2userId(int)} and their item counterparts)
+ * avoid boxing the identifiers.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class LongCSRFastPreferenceData extends CSRFastPreferenceData<Long, Long, Void> {
+
+    private final LongFastUserIndex uIndex;
+    private final LongFastItemIndex iIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param data CSR preference data
+     * @param uIndex long user index of the data
+     * @param iIndex long item index of the data
+     */
+    public LongCSRFastPreferenceData(CSRFastPreferenceData<Long, Long, Void> data, LongFastUserIndex uIndex, LongFastItemIndex iIndex) {
+        super(data, uIndex, iIndex);
+        this.uIndex = uIndex;
+        this.iIndex = iIndex;
+    }
+
+    /**
+     * Returns the user index.
+     *
+     * @return the user index
+     */
+    public LongFastUserIndex getUserIndex() {
+        return uIndex;
+    }
+
+    /**
+     * Returns the item index.
+     *
+     * @return the item index
+     */
+    public LongFastItemIndex getItemIndex() {
+        return iIndex;
+    }
+}
@@ -0,0 +1,380 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.preference;
+
+import es.uam.eps.ir.ranksys.core.util.parsing.DoubleParser;
+import es.uam.eps.ir.ranksys.core.util.parsing.Parser;
+import es.uam.eps.ir.ranksys.core.util.parsing.Parsers;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import es.uam.eps.ir.ranksys.fast.utils.LittleEndianWriter;
+import es.uam.eps.ir.ranksys.fast.utils.MappedBuffer;
+import it.unimi.dsi.fastutil.doubles.AbstractDoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.AbstractIntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.function.IntFunction;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * FastPreferenceData stored in a binary file that is memory-mapped. The data
+ * is therefore kept off-heap and shared through the page cache by all the
+ * processes that open the same file.
+ *
+ * The file is written in little-endian order and contains a header followed
+ * by the compressed sparse row (CSR) representation of the preferences by
+ * user and by item:
+ * <ul>
+ * <li>header: magic number (int), format version (int), number of users
+ * (int), number of items (int), number of preferences (long), flags (int)
+ * and a padding int;</li>
+ * <li>user offsets (int[numUsers + 1]), item indexes (int[numPreferences])
+ * and values (double[numPreferences]) of the preferences by user;</li>
+ * <li>item offsets (int[numItems + 1]), user indexes (int[numPreferences])
+ * and values (double[numPreferences]) of the preferences by item.</li>
+ * </ul>
+ * Every section starts at a position multiple of 8 bytes. The preferences of
+ * each user and item are sorted by index, which is recorded in the flags.
+ * Files of the first version of the format, whose header has no flags and
+ * whose preferences may be unsorted, are read as unsorted. Other information
+ * of the preferences is not stored.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ *
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class MappedFastPreferenceData<U, I> extends AbstractFastPreferenceData<U, I, Void> {
+
+    private static final int MAGIC = 0x52535046;
+    private static final int VERSION = 2;
+    private static final long HEADER_SIZE = 32;
+    private static final int VERSION_1 = 1;
+    private static final long HEADER_SIZE_1 = 24;
+    private static final int SORTED_ROWS = 1;
+
+    private final MappedBuffer buffer;
+    private final int numPreferences;
+    private final boolean sortedRows;
+    private final Section uSection;
+    private final Section iSection;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer mapped binary file
+     * @param uIndex user index
+     * @param iIndex item index
+     * @throws IOException when the file is not a valid binary preference file
+     * or does not match the indexes
+     */
+    protected MappedFastPreferenceData(MappedBuffer buffer, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        super(uIndex, iIndex);
+        this.buffer = buffer;
+
+        if (buffer.size() < HEADER_SIZE_1 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a binary preference file");
+        }
+        int version = buffer.getInt(4);
+        long headerSize;
+        if (version == VERSION && buffer.size() >= HEADER_SIZE) {
+            headerSize = HEADER_SIZE;
+            this.sortedRows = (buffer.getInt(24) & SORTED_ROWS) != 0;
+        } else if (version == VERSION_1) {
+            headerSize = HEADER_SIZE_1;
+            this.sortedRows = false;
+        } else {
+            throw new IOException("unsupported binary preference file version " + version);
+        }
+        int nu = buffer.getInt(8);
+        int ni = buffer.getInt(12);
+        if (nu != uIndex.numUsers() || ni != iIndex.numItems()) {
+            throw new IOException("binary preference file does not match indexes: " + nu + " users and " + ni + " items");
+        }
+        long np = buffer.getLong(16);
+        if (np > Integer.MAX_VALUE) {
+            throw new IOException("too many preferences: " + np);
+        }
+        this.numPreferences = (int) np;
+
+        this.uSection = new Section(buffer, headerSize, nu, numPreferences);
+        this.iSection = new Section(buffer, uSection.end, ni, numPreferences);
+        if (iSection.end > buffer.size()) {
+            throw new IOException("truncated binary preference file");
+        }
+    }
+
+    @Override
+    public int numUsers(int iidx) {
+        return iSection.length(iidx);
+    }
+
+    @Override
+    public int numItems(int uidx) {
+        return uSection.length(uidx);
+    }
+
+    @Override
+    public Stream<IdxPref<Void>> getUidxPreferences(int uidx) {
+        return uSection.getPreferences(uidx);
+    }
+
+    @Override
+    public Stream<IdxPref<Void>> getIidxPreferences(int iidx) {
+        return iSection.getPreferences(iidx);
+    }
+
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        return uSection.getIdxs(uidx);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        return uSection.getVs(uidx);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        return iSection.getIdxs(iidx);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        return iSection.getVs(iidx);
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer consumer) {
+        uSection.forEachPref(uidx, consumer);
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer consumer) {
+        iSection.forEachPref(iidx, consumer);
+    }
+
+    @Override
+    public int numPreferences() {
+        return numPreferences;
+    }
+
+    @Override
+    public boolean hasSortedRows() {
+        return sortedRows;
+    }
+
+    @Override
+    public IntStream getUidxWithPreferences() {
+        return IntStream.range(0, numUsers())
+                .filter(uidx -> numItems(uidx) > 0);
+    }
+
+    @Override
+    public IntStream getIidxWithPreferences() {
+        return IntStream.range(0, numItems())
+                .filter(iidx -> numUsers(iidx) > 0);
+    }
+
+    /**
+     * Positions of the offsets, indexes and values of one direction (by user
+     * or by item) of the preferences in the file.
+     */
+    private static class Section {
+
+        private final MappedBuffer buffer;
+        private final long offsets;
+        private final long idxs;
+        private final long vs;
+        private final long end;
+
+        public Section(MappedBuffer buffer, long start, int n, int numPreferences) {
+            this.buffer = buffer;
+            this.offsets = start;
+            this.idxs = align(offsets + 4L * (n + 1));
+            this.vs = align(idxs + 4L * numPreferences);
+            this.end = align(vs + 8L * numPreferences);
+        }
+
+        public int start(int idx) {
+            return buffer.getInt(offsets + 4L * idx);
+        }
+
+        public int length(int idx) {
+            return start(idx + 1) - start(idx);
+        }
+
+        public Stream<IdxPref<Void>> getPreferences(int idx) {
+            return IntStream.range(start(idx), start(idx + 1))
+                    .mapToObj(j -> new IdxPref<>(buffer.getInt(idxs + 4L * j), buffer.getDouble(vs + 8L * j), null));
+        }
+
+        public IntIterator getIdxs(int idx) {
+            return new AbstractIntIterator() {
+
+                private int j = start(idx);
+                private final int to = start(idx + 1);
+
+                @Override
+                public boolean hasNext() {
+                    return j < to;
+                }
+
+                @Override
+                public int nextInt() {
+                    return buffer.getInt(idxs + 4L * j++);
+                }
+            };
+        }
+
+        public DoubleIterator getVs(int idx) {
+            return new AbstractDoubleIterator() {
+
+                private int j = start(idx);
+                private final int to = start(idx + 1);
+
+                @Override
+                public boolean hasNext() {
+                    return j < to;
+                }
+
+                @Override
+                public double nextDouble() {
+                    return buffer.getDouble(vs + 8L * j++);
+                }
+            };
+        }
+
+        public void forEachPref(int idx, IntDoubleConsumer consumer) {
+            int to = start(idx + 1);
+            for (int j = start(idx); j < to; j++) {
+                consumer.accept(buffer.getInt(idxs + 4L * j), buffer.getDouble(vs + 8L * j));
+            }
+        }
+    }
+
+    private static long align(long pos) {
+        return (pos + 7) & ~7L;
+    }
+
+    /**
+     * Opens a binary preference file.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param path path of the binary file
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return a mapped preference data
+     * @throws IOException when the file does not exist, is not valid or IO
+     * error
+     */
+    public static <U, I> MappedFastPreferenceData<U, I> load(String path, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        return new MappedFastPreferenceData<>(MappedBuffer.map(Paths.get(path)), uIndex, iIndex);
+    }
+
+    /**
+     * Writes a preference data in the binary format. Other information of the
+     * preferences is discarded. If the rows of the data are not sorted, a
+     * sorted copy is made first (see {@link CSRFastPreferenceData}).
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param preferences preference data
+     * @param path path of the output file
+     * @throws IOException when IO error
+     */
+    public static <U, I> void write(FastPreferenceData<U, I, ?> preferences, String path) throws IOException {
+        FastPreferenceData<U, I, ?> data = preferences.hasSortedRows() ? preferences : CSRFastPreferenceData.create(preferences);
+
+        int[] uLengths = new int[data.numUsers()];
+        data.getUidxWithPreferences().forEach(uidx -> uLengths[uidx] = data.numItems(uidx));
+        int[] iLengths = new int[data.numItems()];
+        data.getIidxWithPreferences().forEach(iidx -> iLengths[iidx] = data.numUsers(iidx));
+
+        Path file = Paths.get(path);
+        try (LittleEndianWriter out = new LittleEndianWriter(file)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(data.numUsers());
+            out.writeInt(data.numItems());
+            out.writeLong(data.numPreferences());
+            out.writeInt(SORTED_ROWS);
+            out.writeInt(0);
+
+            writeSection(out, uLengths, data::getUidxIidxs, data::getUidxVs);
+            writeSection(out, iLengths, data::getIidxUidxs, data::getIidxVs);
+        }
+    }
+
+    private static void writeSection(LittleEndianWriter out, int[] lengths, IntFunction<IntIterator> idxs, IntFunction<DoubleIterator> vs) throws IOException {
+        int offset = 0;
+        out.writeInt(offset);
+        for (int length : lengths) {
+            offset += length;
+            out.writeInt(offset);
+        }
+        out.align(8);
+
+        for (int idx = 0; idx < lengths.length; idx++) {
+            if (lengths[idx] > 0) {
+                IntIterator it = idxs.apply(idx);
+                while (it.hasNext()) {
+                    out.writeInt(it.nextInt());
+                }
+            }
+        }
+        out.align(8);
+
+        for (int idx = 0; idx < lengths.length; idx++) {
+            if (lengths[idx] > 0) {
+                DoubleIterator it = vs.apply(idx);
+                while (it.hasNext()) {
+                    out.writeDouble(it.nextDouble());
+                }
+            }
+        }
+        out.align(8);
+    }
+
+    /**
+     * Converts a preference file in text format (see
+     * {@link SimpleFastPreferenceData#load}) to the binary format. Meant to be
+     * run once, so that subsequent executions open the binary file with
+     * {@link #load(String, FastUserIndex, FastItemIndex)}.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param inPath path of the input text file
+     * @param outPath path of the output binary file
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parser
+     * @param uIndex user index
+     * @param iIndex item index
+     * @throws IOException when path does not exists of IO error
+     */
+    public static <U, I> void convert(String inPath, String outPath, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        write(CSRFastPreferenceData.load(inPath, uParser, iParser, dp, Parsers.vp, uIndex, iIndex), outPath);
+    }
+}
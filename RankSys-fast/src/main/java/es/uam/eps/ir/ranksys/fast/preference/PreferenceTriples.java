@@ -0,0 +1,184 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.preference;
+
+import static es.uam.eps.ir.ranksys.core.util.FastStringSplitter.split;
+import es.uam.eps.ir.ranksys.core.util.parsing.DoubleParser;
+import es.uam.eps.ir.ranksys.core.util.parsing.Parser;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.ObjectArrayList;
+import java.util.stream.Stream;
+
+/**
+ * List of (user index, item index, value, other information) preferences in
+ * parallel primitive arrays, used as intermediate representation when
+ * building fast preference data. Other information is only stored once a
+ * non-null value has been added.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ *
+ * @param <O> type of other information for preferences
+ */
+public class PreferenceTriples<O> {
+
+    private final IntArrayList uidxs;
+    private final IntArrayList iidxs;
+    private final DoubleArrayList vs;
+    private ObjectArrayList<O> os;
+
+    /**
+     * Constructor for an empty list.
+     */
+    public PreferenceTriples() {
+        this(new IntArrayList(), new IntArrayList(), new DoubleArrayList(), null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param uidxs user indexes of the preferences
+     * @param iidxs item indexes of the preferences
+     * @param vs values of the preferences
+     * @param os other information of the preferences, null if not available
+     */
+    public PreferenceTriples(IntArrayList uidxs, IntArrayList iidxs, DoubleArrayList vs, ObjectArrayList<O> os) {
+        this.uidxs = uidxs;
+        this.iidxs = iidxs;
+        this.vs = vs;
+        this.os = os;
+    }
+
+    /**
+     * Adds a preference.
+     *
+     * @param uidx user index
+     * @param iidx item index
+     * @param v value
+     * @param o other information
+     */
+    public void add(int uidx, int iidx, double v, O o) {
+        if (o != null && os == null) {
+            os = new ObjectArrayList<>();
+            os.size(uidxs.size());
+        }
+        uidxs.add(uidx);
+        iidxs.add(iidx);
+        vs.add(v);
+        if (os != null) {
+            os.add(o);
+        }
+    }
+
+    /**
+     * Returns the number of preferences.
+     *
+     * @return number of preferences
+     */
+    public int size() {
+        return uidxs.size();
+    }
+
+    /**
+     * Returns the user indexes of the preferences.
+     *
+     * @return user indexes
+     */
+    public IntArrayList getUidxs() {
+        return uidxs;
+    }
+
+    /**
+     * Returns the item indexes of the preferences.
+     *
+     * @return item indexes
+     */
+    public IntArrayList getIidxs() {
+        return iidxs;
+    }
+
+    /**
+     * Returns the values of the preferences.
+     *
+     * @return values
+     */
+    public DoubleArrayList getVs() {
+        return vs;
+    }
+
+    /**
+     * Returns the other information of the preferences.
+     *
+     * @return other information, null if not available
+     */
+    public ObjectArrayList<O> getOs() {
+        return os;
+    }
+
+    /**
+     * Parses preferences from lines of text.
+     *
+     * Each line is a different preference, with "::"-separated fields indicating user, item, weight and other information.
+     * Preferences of users or items not contained in the indexes are ignored.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param lines lines of text
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parse
+     * @param vParser other info parser
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return the list of preferences read
+     */
+    public static <U, I, O> PreferenceTriples<O> parse(Stream<String> lines, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
+        PreferenceTriples<O> triples = new PreferenceTriples<>();
+
+        lines.forEach(l -> {
+            CharSequence[] tokens = split(l, "::", 4);
+            U user = uParser.parse(tokens[0]);
+            I item = iParser.parse(tokens[1]);
+            double value;
+            if (tokens.length >= 3) {
+                value = dp.parse(tokens[2]);
+            } else {
+                value = dp.parse(null);
+            }
+            O other;
+            if (tokens.length == 4) {
+                other = vParser.parse(tokens[3]);
+            } else {
+                other = vParser.parse(null);
+            }
+
+            int uidx = uIndex.user2uidx(user);
+            int iidx = iIndex.item2iidx(item);
+            if (uidx == -1 || iidx == -1) {
+                return;
+            }
+
+            triples.add(uidx, iidx, value, other);
+        });
+
+        return triples;
+    }
+}
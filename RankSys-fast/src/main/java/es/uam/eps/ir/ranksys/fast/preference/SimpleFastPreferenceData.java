@@ -18,10 +18,18 @@
 package es.uam.eps.ir.ranksys.fast.preference;
 
 import static es.uam.eps.ir.ranksys.core.util.FastStringSplitter.split;
+import es.uam.eps.ir.ranksys.core.util.ChunkedLineReader;
 import es.uam.eps.ir.ranksys.core.util.parsing.DoubleParser;
 import es.uam.eps.ir.ranksys.core.util.parsing.Parser;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import it.unimi.dsi.fastutil.doubles.AbstractDoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterators;
+import it.unimi.dsi.fastutil.ints.AbstractIntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
 import java.io.BufferedReader;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -91,6 +99,84 @@ public class SimpleFastPreferenceData<U, I, O> extends AbstractFastPreferenceDat
         }
     }
 
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        return getIdxs(uidxList.get(uidx));
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        return getVs(uidxList.get(uidx));
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        return getIdxs(iidxList.get(iidx));
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        return getVs(iidxList.get(iidx));
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer consumer) {
+        forEachPref(uidxList.get(uidx), consumer);
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer consumer) {
+        forEachPref(iidxList.get(iidx), consumer);
+    }
+
+    private static <O> IntIterator getIdxs(List<IdxPref<O>> list) {
+        if (list == null) {
+            return IntIterators.EMPTY_ITERATOR;
+        }
+        return new AbstractIntIterator() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < list.size();
+            }
+
+            @Override
+            public int nextInt() {
+                return list.get(i++).idx;
+            }
+        };
+    }
+
+    private static <O> DoubleIterator getVs(List<IdxPref<O>> list) {
+        if (list == null) {
+            return DoubleIterators.EMPTY_ITERATOR;
+        }
+        return new AbstractDoubleIterator() {
+            private int i = 0;
+
+            @Override
+            public boolean hasNext() {
+                return i < list.size();
+            }
+
+            @Override
+            public double nextDouble() {
+                return list.get(i++).v;
+            }
+        };
+    }
+
+    private static <O> void forEachPref(List<IdxPref<O>> list, IntDoubleConsumer consumer) {
+        if (list == null) {
+            return;
+        }
+        for (int i = 0; i < list.size(); i++) {
+            IdxPref<O> pref = list.get(i);
+            consumer.accept(pref.idx, pref.v);
+        }
+    }
+
     @Override
     public int numPreferences() {
         return numPreferences;
@@ -215,4 +301,69 @@ public class SimpleFastPreferenceData<U, I, O> extends AbstractFastPreferenceDat
         return new SimpleFastPreferenceData<>(numPreferences[0], uidxList, iidxList, uIndex, iIndex);
     }
 
+    /**
+     * Load preferences from a file in parallel. The file is split in chunks
+     * aligned on newlines that are parsed by different threads (see
+     * {@link ChunkedLineReader}), and the chunks are then merged in the
+     * order of the file.
+     *
+     * Each line is a different preference, with "::"-separated fields indicating user, item, weight and other information.
+     * Preferences of users or items not contained in the indexes are ignored.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param <O> type of other information
+     * @param path path of the input file
+     * @param uParser user type parser
+     * @param iParser item type parser
+     * @param dp double parse
+     * @param vParser other info parser
+     * @param uIndex user index
+     * @param iIndex item index
+     * @return a simple list-of-lists FastPreferenceData with the information read
+     * @throws IOException when path does not exists of IO error
+     */
+    public static <U, I, O> SimpleFastPreferenceData<U, I, O> loadParallel(String path, Parser<U> uParser, Parser<I> iParser, DoubleParser dp, Parser<O> vParser, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        List<PreferenceTriples<O>> chunks = ChunkedLineReader.read(path, lines -> PreferenceTriples.parse(lines, uParser, iParser, dp, vParser, uIndex, iIndex));
+
+        int numPreferences = 0;
+
+        List<List<IdxPref<O>>> uidxList = new ArrayList<>();
+        for (int uidx = 0; uidx < uIndex.numUsers(); uidx++) {
+            uidxList.add(null);
+        }
+
+        List<List<IdxPref<O>>> iidxList = new ArrayList<>();
+        for (int iidx = 0; iidx < iIndex.numItems(); iidx++) {
+            iidxList.add(null);
+        }
+
+        for (PreferenceTriples<O> chunk : chunks) {
+            int[] u = chunk.getUidxs().elements();
+            int[] i = chunk.getIidxs().elements();
+            double[] v = chunk.getVs().elements();
+            List<O> o = chunk.getOs();
+            for (int j = 0; j < chunk.size(); j++) {
+                O other = o == null ? null : o.get(j);
+
+                List<IdxPref<O>> uList = uidxList.get(u[j]);
+                if (uList == null) {
+                    uList = new ArrayList<>();
+                    uidxList.set(u[j], uList);
+                }
+                uList.add(new IdxPref<>(i[j], v[j], other));
+
+                List<IdxPref<O>> iList = iidxList.get(i[j]);
+                if (iList == null) {
+                    iList = new ArrayList<>();
+                    iidxList.set(i[j], iList);
+                }
+                iList.add(new IdxPref<>(u[j], v[j], other));
+            }
+            numPreferences += chunk.size();
+        }
+
+        return new SimpleFastPreferenceData<>(numPreferences, uidxList, iidxList, uIndex, iIndex);
+    }
+
 }
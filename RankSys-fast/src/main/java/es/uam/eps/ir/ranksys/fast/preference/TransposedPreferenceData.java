@@ -18,6 +18,9 @@
 package es.uam.eps.ir.ranksys.fast.preference;
 
 import es.uam.eps.ir.ranksys.core.preference.IdPref;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
@@ -85,6 +88,41 @@ public class TransposedPreferenceData<I, U, O> implements FastPreferenceData<I,
         return d.getUidxPreferences(iidx);
     }
 
+    @Override
+    public IntIterator getUidxIidxs(int uidx) {
+        return d.getIidxUidxs(uidx);
+    }
+
+    @Override
+    public DoubleIterator getUidxVs(int uidx) {
+        return d.getIidxVs(uidx);
+    }
+
+    @Override
+    public IntIterator getIidxUidxs(int iidx) {
+        return d.getUidxIidxs(iidx);
+    }
+
+    @Override
+    public DoubleIterator getIidxVs(int iidx) {
+        return d.getUidxVs(iidx);
+    }
+
+    @Override
+    public void forEachUidxPref(int uidx, IntDoubleConsumer consumer) {
+        d.forEachIidxPref(uidx, consumer);
+    }
+
+    @Override
+    public void forEachIidxPref(int iidx, IntDoubleConsumer consumer) {
+        d.forEachUidxPref(iidx, consumer);
+    }
+
+    @Override
+    public boolean hasSortedRows() {
+        return d.hasSortedRows();
+    }
+
     @Override
     public int numUsers() {
         return d.numItems();
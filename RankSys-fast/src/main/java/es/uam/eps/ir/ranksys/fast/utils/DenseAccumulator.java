@@ -0,0 +1,163 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.utils;
+
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+
+/**
+ * Dense accumulator of scores. Alternative to adding values to a
+ * Int2DoubleOpenHashMap: values are summed in a double array with one position
+ * per user/item, and the positions that have been touched are kept in a list
+ * so that the accumulator can be iterated and reset in time proportional to
+ * the number of touched positions.
+ *
+ * An accumulator is not thread-safe. Since it is meant to be reused across
+ * calls, see {@link #threadLocal(int)} for keeping one per worker thread.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class DenseAccumulator {
+
+    private final double[] values;
+    private final boolean[] used;
+    private final int[] touched;
+    private int size;
+
+    /**
+     * Constructor.
+     *
+     * @param n number of positions (users/items) of the accumulator
+     */
+    public DenseAccumulator(int n) {
+        this.values = new double[n];
+        this.used = new boolean[n];
+        this.touched = new int[n];
+        this.size = 0;
+    }
+
+    /**
+     * Creates a thread-local supplier of accumulators, so that each worker
+     * thread reuses its own accumulator.
+     *
+     * @param n number of positions (users/items) of the accumulators
+     * @return thread-local accumulators
+     */
+    public static ThreadLocal<DenseAccumulator> threadLocal(int n) {
+        return ThreadLocal.withInitial(() -> new DenseAccumulator(n));
+    }
+
+    /**
+     * Adds a value to a position.
+     *
+     * @param idx index of the position
+     * @param v value to be added
+     */
+    public void add(int idx, double v) {
+        if (!used[idx]) {
+            used[idx] = true;
+            touched[size++] = idx;
+        }
+        values[idx] += v;
+    }
+
+    /**
+     * Returns the accumulated value of a position.
+     *
+     * @param idx index of the position
+     * @return accumulated value, zero if not touched
+     */
+    public double get(int idx) {
+        return values[idx];
+    }
+
+    /**
+     * Checks whether a position has been touched since the last reset.
+     *
+     * @param idx index of the position
+     * @return true if touched, false otherwise
+     */
+    public boolean contains(int idx) {
+        return used[idx];
+    }
+
+    /**
+     * Returns the number of touched positions.
+     *
+     * @return number of touched positions
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of positions of the accumulator.
+     *
+     * @return number of positions
+     */
+    public int capacity() {
+        return values.length;
+    }
+
+    /**
+     * Returns the index of the i-th touched position, in order of first
+     * touch.
+     *
+     * @param i index in the list of touched positions
+     * @return index of the position
+     */
+    public int getTouched(int i) {
+        return touched[i];
+    }
+
+    /**
+     * Performs an operation over the touched positions and their values.
+     *
+     * @param action operation over index-value pairs
+     */
+    public void forEach(IntDoubleConsumer action) {
+        for (int i = 0; i < size; i++) {
+            int idx = touched[i];
+            action.accept(idx, values[idx]);
+        }
+    }
+
+    /**
+     * Copies the touched positions and their values into a map.
+     *
+     * @return map of index-value pairs
+     */
+    public Int2DoubleOpenHashMap toMap() {
+        Int2DoubleOpenHashMap map = new Int2DoubleOpenHashMap(size);
+        map.defaultReturnValue(0.0);
+        forEach(map::put);
+
+        return map;
+    }
+
+    /**
+     * Clears the touched positions.
+     */
+    public void reset() {
+        for (int i = 0; i < size; i++) {
+            int idx = touched[i];
+            values[idx] = 0.0;
+            used[idx] = false;
+        }
+        size = 0;
+    }
+}
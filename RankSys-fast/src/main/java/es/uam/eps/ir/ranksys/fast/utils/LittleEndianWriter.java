@@ -0,0 +1,154 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.utils;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Buffered writer of primitive values in little-endian order, the
+ * counterpart of {@link MappedBuffer}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class LittleEndianWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private long position;
+
+    /**
+     * Constructor. Creates or truncates the file.
+     *
+     * @param path path of the file
+     * @throws IOException when IO error
+     */
+    public LittleEndianWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, CREATE, TRUNCATE_EXISTING, WRITE);
+        this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        this.position = 0;
+    }
+
+    /**
+     * Returns the number of bytes written so far.
+     *
+     * @return the number of bytes written so far
+     */
+    public long position() {
+        return position;
+    }
+
+    /**
+     * Writes an int.
+     *
+     * @param v value
+     * @throws IOException when IO error
+     */
+    public void writeInt(int v) throws IOException {
+        ensure(Integer.BYTES);
+        buffer.putInt(v);
+        position += Integer.BYTES;
+    }
+
+    /**
+     * Writes a long.
+     *
+     * @param v value
+     * @throws IOException when IO error
+     */
+    public void writeLong(long v) throws IOException {
+        ensure(Long.BYTES);
+        buffer.putLong(v);
+        position += Long.BYTES;
+    }
+
+    /**
+     * Writes a float.
+     *
+     * @param v value
+     * @throws IOException when IO error
+     */
+    public void writeFloat(float v) throws IOException {
+        ensure(Float.BYTES);
+        buffer.putFloat(v);
+        position += Float.BYTES;
+    }
+
+    /**
+     * Writes a double.
+     *
+     * @param v value
+     * @throws IOException when IO error
+     */
+    public void writeDouble(double v) throws IOException {
+        ensure(Double.BYTES);
+        buffer.putDouble(v);
+        position += Double.BYTES;
+    }
+
+    /**
+     * Writes zeros until the position is a multiple of the alignment.
+     *
+     * @param alignment alignment in bytes
+     * @throws IOException when IO error
+     */
+    public void align(int alignment) throws IOException {
+        while (position % alignment != 0) {
+            ensure(1);
+            buffer.put((byte) 0);
+            position++;
+        }
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buffer.remaining() < n) {
+            flush();
+        }
+    }
+
+    /**
+     * Writes the buffered content to the file.
+     *
+     * @throws IOException when IO error
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+}
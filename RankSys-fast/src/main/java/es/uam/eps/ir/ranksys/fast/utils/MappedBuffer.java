@@ -0,0 +1,117 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Read-only little-endian view of a memory-mapped file. Since a single
+ * mapping cannot exceed 2GB, the file is mapped in segments of 1GB.
+ * Positions are expressed in bytes; reads must be aligned to the size of the
+ * value being read so that no value crosses a segment boundary.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class MappedBuffer {
+
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private final ByteBuffer[] segments;
+    private final long size;
+
+    private MappedBuffer(ByteBuffer[] segments, long size) {
+        this.segments = segments;
+        this.size = size;
+    }
+
+    /**
+     * Maps a whole file in read-only mode.
+     *
+     * @param path path of the file
+     * @return a mapped buffer of the file
+     * @throws IOException when IO error
+     */
+    public static MappedBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, READ)) {
+            long size = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) ((size + SEGMENT_MASK) >>> SEGMENT_SHIFT)];
+            for (int s = 0; s < segments.length; s++) {
+                long start = (long) s << SEGMENT_SHIFT;
+                long length = Math.min(SEGMENT_MASK + 1, size - start);
+                segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, length).order(ByteOrder.LITTLE_ENDIAN);
+            }
+
+            return new MappedBuffer(segments, size);
+        }
+    }
+
+    /**
+     * Returns the size in bytes of the mapped file.
+     *
+     * @return size in bytes of the mapped file
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Reads an int.
+     *
+     * @param pos position in bytes
+     * @return the int at the position
+     */
+    public int getInt(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getInt((int) (pos & SEGMENT_MASK));
+    }
+
+    /**
+     * Reads a long.
+     *
+     * @param pos position in bytes
+     * @return the long at the position
+     */
+    public long getLong(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getLong((int) (pos & SEGMENT_MASK));
+    }
+
+    /**
+     * Reads a float.
+     *
+     * @param pos position in bytes
+     * @return the float at the position
+     */
+    public float getFloat(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getFloat((int) (pos & SEGMENT_MASK));
+    }
+
+    /**
+     * Reads a double.
+     *
+     * @param pos position in bytes
+     * @return the double at the position
+     */
+    public double getDouble(long pos) {
+        return segments[(int) (pos >>> SEGMENT_SHIFT)].getDouble((int) (pos & SEGMENT_MASK));
+    }
+}
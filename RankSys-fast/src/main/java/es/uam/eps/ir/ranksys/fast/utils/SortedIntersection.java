@@ -0,0 +1,122 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.utils;
+
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+
+/**
+ * Intersection of sorted lists of indexes, such as the preferences of users
+ * and items of fast preference data with sorted rows. The first list is given
+ * as a sorted array and the second one as an iterator in increasing order.
+ * When both lists have similar sizes they are merged linearly; when the array
+ * is much longer than the iterated list, each element is looked for in the
+ * array by galloping (exponential search) from the last match.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class SortedIntersection {
+
+    /**
+     * Ratio of sizes of the lists from which galloping is used instead of
+     * a linear merge.
+     */
+    public static final int GALLOP_RATIO = 8;
+
+    /**
+     * Returns the size of the intersection of two sorted lists.
+     *
+     * @param a sorted array of indexes
+     * @param na number of indexes of the array
+     * @param b iterator of indexes in increasing order
+     * @param nb number of indexes of the iterator
+     * @return size of the intersection
+     */
+    public static int size(int[] a, int na, IntIterator b, int nb) {
+        int size = 0;
+        boolean gallop = (long) nb * GALLOP_RATIO < na;
+        int i = 0;
+        while (i < na && b.hasNext()) {
+            int x = b.nextInt();
+            i = gallop ? gallop(a, i, na, x) : merge(a, i, na, x);
+            if (i < na && a[i] == x) {
+                size++;
+                i++;
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * Returns the inner product of two sparse vectors whose indexes are
+     * sorted.
+     *
+     * @param a sorted array of indexes of the first vector
+     * @param av values of the first vector
+     * @param na number of indexes of the first vector
+     * @param bidxs iterator of indexes of the second vector in increasing order
+     * @param bvs iterator of values of the second vector
+     * @param nb number of indexes of the second vector
+     * @return inner product of the vectors
+     */
+    public static double product(int[] a, double[] av, int na, IntIterator bidxs, DoubleIterator bvs, int nb) {
+        double product = 0.0;
+        boolean gallop = (long) nb * GALLOP_RATIO < na;
+        int i = 0;
+        while (i < na && bidxs.hasNext()) {
+            int x = bidxs.nextInt();
+            double v = bvs.nextDouble();
+            i = gallop ? gallop(a, i, na, x) : merge(a, i, na, x);
+            if (i < na && a[i] == x) {
+                product += av[i] * v;
+                i++;
+            }
+        }
+
+        return product;
+    }
+
+    private static int merge(int[] a, int from, int to, int x) {
+        while (from < to && a[from] < x) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int gallop(int[] a, int from, int to, int x) {
+        int step = 1;
+        int low = from;
+        int high = from;
+        while (high < to && a[high] < x) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        high = Math.min(high, to);
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (a[mid] < x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
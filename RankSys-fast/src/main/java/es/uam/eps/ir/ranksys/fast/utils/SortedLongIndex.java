@@ -0,0 +1,103 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.utils;
+
+import java.util.Arrays;
+import java.util.stream.LongStream;
+
+/**
+ * Index of long identifiers backed by a sorted array without duplicates. The
+ * index of an identifier is its position in the array, found by binary
+ * search, so that lookups do not box nor hash identifiers.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class SortedLongIndex {
+
+    private final long[] ids;
+
+    /**
+     * Constructor.
+     *
+     * @param ids sorted array of identifiers without duplicates
+     */
+    protected SortedLongIndex(long[] ids) {
+        this.ids = ids;
+    }
+
+    /**
+     * Gets the index of an identifier.
+     *
+     * @param id identifier
+     * @return index of the identifier, or -1 if not contained
+     */
+    public int getIdx(long id) {
+        int idx = Arrays.binarySearch(ids, id);
+        return idx < 0 ? -1 : idx;
+    }
+
+    /**
+     * Gets the identifier assigned to the index.
+     *
+     * @param idx index
+     * @return the identifier whose index is idx
+     */
+    public long getId(int idx) {
+        return ids[idx];
+    }
+
+    /**
+     * Returns the number of identifiers.
+     *
+     * @return the number of identifiers
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * Returns the identifiers in increasing order.
+     *
+     * @return stream of identifiers
+     */
+    public LongStream getIds() {
+        return Arrays.stream(ids);
+    }
+
+    /**
+     * Creates an index from a collection of identifiers, possibly unsorted and
+     * with duplicates.
+     *
+     * @param ids identifiers, not modified
+     * @param n number of identifiers to be taken from the array
+     * @return an index of the distinct identifiers
+     */
+    public static SortedLongIndex create(long[] ids, int n) {
+        long[] sorted = Arrays.copyOf(ids, n);
+        Arrays.parallelSort(sorted);
+
+        int m = 0;
+        for (int j = 0; j < n; j++) {
+            if (m == 0 || sorted[j] != sorted[m - 1]) {
+                sorted[m++] = sorted[j];
+            }
+        }
+
+        return new SortedLongIndex(Arrays.copyOf(sorted, m));
+    }
+}
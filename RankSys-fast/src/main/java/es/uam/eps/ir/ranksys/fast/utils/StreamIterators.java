@@ -0,0 +1,79 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.fast.utils;
+
+import it.unimi.dsi.fastutil.doubles.AbstractDoubleIterator;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.AbstractIntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.PrimitiveIterator;
+import java.util.stream.DoubleStream;
+import java.util.stream.IntStream;
+
+/**
+ * Adapters from primitive streams to fastutil iterators that do not box
+ * the elements.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class StreamIterators {
+
+    /**
+     * Returns an iterator over the elements of an integer stream.
+     *
+     * @param stream integer stream
+     * @return an iterator over the elements of the stream
+     */
+    public static IntIterator intIterator(IntStream stream) {
+        PrimitiveIterator.OfInt it = stream.iterator();
+        return new AbstractIntIterator() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public int nextInt() {
+                return it.nextInt();
+            }
+        };
+    }
+
+    /**
+     * Returns an iterator over the elements of a double stream.
+     *
+     * @param stream double stream
+     * @return an iterator over the elements of the stream
+     */
+    public static DoubleIterator doubleIterator(DoubleStream stream) {
+        PrimitiveIterator.OfDouble it = stream.iterator();
+        return new AbstractDoubleIterator() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public double nextDouble() {
+                return it.nextDouble();
+            }
+        };
+    }
+}
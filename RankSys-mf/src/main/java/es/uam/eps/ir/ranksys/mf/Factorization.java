@@ -26,6 +26,8 @@ import static es.uam.eps.ir.ranksys.core.util.parsing.Parsers.dp;
 import static es.uam.eps.ir.ranksys.core.util.parsing.Parsers.ip;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.IdxPermutation;
+import es.uam.eps.ir.ranksys.fast.utils.LittleEndianWriter;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.IOException;
@@ -34,6 +36,13 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.util.stream.IntStream.range;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
@@ -186,6 +195,28 @@ public class Factorization<U, I> implements FastItemIndex<I>, FastUserIndex<U> {
         return K;
     }
 
+    /**
+     * Returns a copy of this factorization with permuted user and item
+     * indexes (see {@link IdxPermutation}): the rows of the matrices are
+     * rearranged in the new order.
+     *
+     * @param uPerm permutation of the user indexes
+     * @param iPerm permutation of the item indexes
+     * @return a factorization with the new indexes
+     */
+    public Factorization<U, I> permute(IdxPermutation uPerm, IdxPermutation iPerm) {
+        return new Factorization<>(uPerm.permute(uIndex), iPerm.permute(iIndex), permuteRows(userMatrix, uPerm), permuteRows(itemMatrix, iPerm), K);
+    }
+
+    private static DenseDoubleMatrix2D permuteRows(DenseDoubleMatrix2D matrix, IdxPermutation perm) {
+        double[][] m = new double[matrix.rows()][];
+        for (int idx = 0; idx < m.length; idx++) {
+            m[idx] = matrix.viewRow(perm.oldIdx(idx)).toArray();
+        }
+
+        return new DenseDoubleMatrix2D(m);
+    }
+
     private static void saveDenseDoubleMatrix2D(OutputStream stream, DenseDoubleMatrix2D matrix) throws IOException {
         BufferedWriter out = new BufferedWriter(new OutputStreamWriter(stream));
         double[][] m = matrix.toArray();
@@ -276,4 +307,83 @@ public class Factorization<U, I> implements FastItemIndex<I>, FastUserIndex<U> {
 
         return new Factorization<>(uIndex, iIndex, userMatrix, itemMatrix, K);
     }
+
+    /**
+     * Saves this matrix factorization to a binary file, much faster to write
+     * and read than the compressed text format of {@link #save(OutputStream)}.
+     * The file contains a small header followed by the raw little-endian
+     * values of the user and item matrices, see
+     * {@link #loadBinary(String, FastUserIndex, FastItemIndex)}.
+     *
+     * @param path path of the output file
+     * @throws IOException when IO error
+     */
+    public void saveBinary(String path) throws IOException {
+        try (LittleEndianWriter out = new LittleEndianWriter(Paths.get(path))) {
+            FactorizationFormat.writeHeader(out, userMatrix.rows(), itemMatrix.rows(), K, FactorizationFormat.DOUBLE_BYTES);
+            for (DenseDoubleMatrix2D matrix : new DenseDoubleMatrix2D[]{userMatrix, itemMatrix}) {
+                for (int idx = 0; idx < matrix.rows(); idx++) {
+                    for (int k = 0; k < K; k++) {
+                        out.writeDouble(matrix.getQuick(idx, k));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Loads a matrix factorization from a binary file. The file is
+     * memory-mapped and its matrices are copied in bulk to the heap. Single
+     * precision files (see {@link FloatFactorization#save(String)}) are
+     * accepted too.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param path path of the file
+     * @param uIndex fast user index
+     * @param iIndex fast item index
+     * @return a factorization
+     * @throws IOException when the file does not exist, is not valid, does
+     * not match the indexes or IO error
+     */
+    public static <U, I> Factorization<U, I> loadBinary(String path, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), READ)) {
+            FactorizationFormat format = FactorizationFormat.readHeader(channel);
+            if (format.numUsers != uIndex.numUsers() || format.numItems != iIndex.numItems()) {
+                throw new IOException("binary factorization file does not match indexes: " + format.numUsers + " users, " + format.numItems + " items");
+            }
+
+            DenseDoubleMatrix2D userMatrix = loadDenseDoubleMatrix2D(channel, format.userOffset(), format.numUsers, format.K, format.bytes);
+            DenseDoubleMatrix2D itemMatrix = loadDenseDoubleMatrix2D(channel, format.itemOffset(), format.numItems, format.K, format.bytes);
+
+            return new Factorization<>(uIndex, iIndex, userMatrix, itemMatrix, format.K);
+        }
+    }
+
+    private static DenseDoubleMatrix2D loadDenseDoubleMatrix2D(FileChannel channel, long offset, int rows, int columns, int bytes) throws IOException {
+        DenseDoubleMatrix2D matrix = new DenseDoubleMatrix2D(rows, columns);
+        ByteBuffer[] segments = FactorizationFormat.map(channel, offset, rows, columns, bytes);
+        int rowsPerSegment = FactorizationFormat.rowsPerSegment(columns, bytes);
+
+        range(0, segments.length).parallel().forEach(s -> {
+            double[] row = new double[columns];
+            float[] frow = new float[columns];
+            DoubleBuffer doubles = bytes == FactorizationFormat.DOUBLE_BYTES ? segments[s].asDoubleBuffer() : null;
+            FloatBuffer floats = bytes == FactorizationFormat.FLOAT_BYTES ? segments[s].asFloatBuffer() : null;
+            int to = Math.min(rows, (s + 1) * rowsPerSegment);
+            for (int idx = s * rowsPerSegment; idx < to; idx++) {
+                if (doubles != null) {
+                    doubles.get(row);
+                } else {
+                    floats.get(frow);
+                    for (int k = 0; k < columns; k++) {
+                        row[k] = frow[k];
+                    }
+                }
+                matrix.viewRow(idx).assign(row);
+            }
+        });
+
+        return matrix;
+    }
 }
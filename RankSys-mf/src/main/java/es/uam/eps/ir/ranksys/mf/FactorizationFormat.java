@@ -0,0 +1,128 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.mf;
+
+import es.uam.eps.ir.ranksys.fast.utils.LittleEndianWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary format of factorizations, written by
+ * {@link Factorization#saveBinary(String)} and
+ * {@link FloatFactorization#save(String)}.
+ *
+ * The file is written in little-endian order and contains:
+ * <ul>
+ * <li>header: magic number (int), format version (int), number of users
+ * (int), number of items (int), dimension of the latent space (int), bytes
+ * per value (int, 8 for doubles and 4 for floats) and two padding ints;</li>
+ * <li>user matrix, in row-major order;</li>
+ * <li>item matrix, in row-major order.</li>
+ * </ul>
+ * Matrices are raw blocks of values, so that they can be read in bulk or
+ * memory-mapped.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+final class FactorizationFormat {
+
+    static final int MAGIC = 0x52534d46;
+    static final int VERSION = 1;
+    static final long HEADER_SIZE = 32;
+    static final int DOUBLE_BYTES = Double.BYTES;
+    static final int FLOAT_BYTES = Float.BYTES;
+
+    private static final int SEGMENT_BYTES = 1 << 30;
+
+    final int numUsers;
+    final int numItems;
+    final int K;
+    final int bytes;
+
+    private FactorizationFormat(int numUsers, int numItems, int K, int bytes) {
+        this.numUsers = numUsers;
+        this.numItems = numItems;
+        this.K = K;
+        this.bytes = bytes;
+    }
+
+    static void writeHeader(LittleEndianWriter out, int numUsers, int numItems, int K, int bytes) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(numUsers);
+        out.writeInt(numItems);
+        out.writeInt(K);
+        out.writeInt(bytes);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    static FactorizationFormat readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate((int) HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                throw new IOException("not a binary factorization file");
+            }
+        }
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("not a binary factorization file");
+        }
+        if (header.getInt(4) != VERSION) {
+            throw new IOException("unsupported binary factorization file version " + header.getInt(4));
+        }
+        FactorizationFormat format = new FactorizationFormat(header.getInt(8), header.getInt(12), header.getInt(16), header.getInt(20));
+        if (format.bytes != DOUBLE_BYTES && format.bytes != FLOAT_BYTES) {
+            throw new IOException("unsupported value size in binary factorization file: " + format.bytes);
+        }
+        if (channel.size() < format.itemOffset() + (long) format.numItems * format.K * format.bytes) {
+            throw new IOException("truncated binary factorization file");
+        }
+
+        return format;
+    }
+
+    long userOffset() {
+        return HEADER_SIZE;
+    }
+
+    long itemOffset() {
+        return HEADER_SIZE + (long) numUsers * K * bytes;
+    }
+
+    /**
+     * Maximum number of rows of a segment of a matrix, so that no segment
+     * exceeds 1GB and no row crosses a segment boundary.
+     */
+    static int rowsPerSegment(int columns, int bytes) {
+        return Math.max(1, SEGMENT_BYTES / Math.max(1, columns * bytes));
+    }
+
+    static ByteBuffer[] map(FileChannel channel, long offset, int rows, int columns, int bytes) throws IOException {
+        int rowsPerSegment = rowsPerSegment(columns, bytes);
+        ByteBuffer[] segments = new ByteBuffer[(rows + rowsPerSegment - 1) / rowsPerSegment];
+        for (int s = 0; s < segments.length; s++) {
+            long start = offset + (long) s * rowsPerSegment * columns * bytes;
+            long length = (long) Math.min(rowsPerSegment, rows - s * rowsPerSegment) * columns * bytes;
+            segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, length).order(ByteOrder.LITTLE_ENDIAN);
+        }
+
+        return segments;
+    }
+}
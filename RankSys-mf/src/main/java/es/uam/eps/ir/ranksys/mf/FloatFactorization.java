@@ -0,0 +1,244 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.mf;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.LittleEndianWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * Matrix factorization with single precision factor matrices, which halves
+ * the memory of a {@link Factorization} for serving recommendations.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class FloatFactorization<U, I> implements FastItemIndex<I>, FastUserIndex<U> {
+
+    private final FloatMatrix userMatrix;
+    private final FloatMatrix itemMatrix;
+    private final int K;
+    private final FastUserIndex<U> uIndex;
+    private final FastItemIndex<I> iIndex;
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex fast user index
+     * @param iIndex fast item index
+     * @param userMatrix user matrix
+     * @param itemMatrix item matrix
+     * @param K dimension of the latent feature space
+     */
+    public FloatFactorization(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, FloatMatrix userMatrix, FloatMatrix itemMatrix, int K) {
+        this.userMatrix = userMatrix;
+        this.itemMatrix = itemMatrix;
+        this.K = K;
+        this.uIndex = uIndex;
+        this.iIndex = iIndex;
+    }
+
+    /**
+     * Creates a single precision copy of a factorization.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param factorization matrix factorization
+     * @param direct whether the matrices are stored off-heap or not
+     * @return a single precision factorization
+     */
+    public static <U, I> FloatFactorization<U, I> create(Factorization<U, I> factorization, boolean direct) {
+        FloatMatrix userMatrix = FloatMatrix.of(factorization.getUserMatrix(), direct);
+        FloatMatrix itemMatrix = FloatMatrix.of(factorization.getItemMatrix(), direct);
+
+        return new FloatFactorization<>(factorization, factorization, userMatrix, itemMatrix, factorization.getK());
+    }
+
+    @Override
+    public int numUsers() {
+        return uIndex.numUsers();
+    }
+
+    @Override
+    public int user2uidx(U u) {
+        return uIndex.user2uidx(u);
+    }
+
+    @Override
+    public U uidx2user(int uidx) {
+        return uIndex.uidx2user(uidx);
+    }
+
+    @Override
+    public int numItems() {
+        return iIndex.numItems();
+    }
+
+    @Override
+    public int item2iidx(I i) {
+        return iIndex.item2iidx(i);
+    }
+
+    @Override
+    public I iidx2item(int iidx) {
+        return iIndex.iidx2item(iidx);
+    }
+
+    @Override
+    public boolean containsUser(U u) {
+        return uIndex.containsUser(u);
+    }
+
+    @Override
+    public boolean containsItem(I i) {
+        return iIndex.containsItem(i);
+    }
+
+    /**
+     * Returns a copy of the row of the user matrix corresponding to the given
+     * user.
+     *
+     * @param u user
+     * @return row of the user matrix, or null if the user is not in the
+     * factorization
+     */
+    public float[] getUserVector(U u) {
+        int uidx = user2uidx(u);
+        if (uidx < 0) {
+            return null;
+        } else {
+            return userMatrix.getRow(uidx);
+        }
+    }
+
+    /**
+     * Returns a copy of the row of the item matrix corresponding to the given
+     * item.
+     *
+     * @param i item
+     * @return row of the item matrix, or null if the item is not in the
+     * factorization
+     */
+    public float[] getItemVector(I i) {
+        int iidx = item2iidx(i);
+        if (iidx < 0) {
+            return null;
+        } else {
+            return itemMatrix.getRow(iidx);
+        }
+    }
+
+    /**
+     * Returns the whole user matrix.
+     *
+     * @return the whole user matrix
+     */
+    public FloatMatrix getUserMatrix() {
+        return userMatrix;
+    }
+
+    /**
+     * Returns the whole item matrix.
+     *
+     * @return the whole item matrix
+     */
+    public FloatMatrix getItemMatrix() {
+        return itemMatrix;
+    }
+
+    /**
+     * Returns the dimension of the latent feature space.
+     *
+     * @return the dimension of the latent feature space
+     */
+    public int getK() {
+        return K;
+    }
+
+    /**
+     * Saves this factorization to a binary file (see
+     * {@link Factorization#saveBinary(String)}) with single precision values,
+     * which can be memory-mapped by {@link #load(String, FastUserIndex, FastItemIndex)}.
+     *
+     * @param path path of the output file
+     * @throws IOException when IO error
+     */
+    public void save(String path) throws IOException {
+        try (LittleEndianWriter out = new LittleEndianWriter(Paths.get(path))) {
+            FactorizationFormat.writeHeader(out, userMatrix.rows(), itemMatrix.rows(), K, FactorizationFormat.FLOAT_BYTES);
+            float[] row = new float[K];
+            for (FloatMatrix matrix : new FloatMatrix[]{userMatrix, itemMatrix}) {
+                for (int idx = 0; idx < matrix.rows(); idx++) {
+                    matrix.getRow(idx, row, 0);
+                    for (float v : row) {
+                        out.writeFloat(v);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Memory-maps a single precision binary factorization file. The matrices
+     * are read directly from the mapped file, without copying them to the
+     * heap, and cannot be modified.
+     *
+     * @param <U> type of the users
+     * @param <I> type of the items
+     * @param path path of the file
+     * @param uIndex fast user index
+     * @param iIndex fast item index
+     * @return a factorization backed by the mapped file
+     * @throws IOException when the file does not exist, is not valid, is not
+     * single precision, does not match the indexes or IO error
+     */
+    public static <U, I> FloatFactorization<U, I> load(String path, FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(path), READ)) {
+            FactorizationFormat format = FactorizationFormat.readHeader(channel);
+            if (format.bytes != FactorizationFormat.FLOAT_BYTES) {
+                throw new IOException("binary factorization file is not single precision");
+            }
+            if (format.numUsers != uIndex.numUsers() || format.numItems != iIndex.numItems()) {
+                throw new IOException("binary factorization file does not match indexes: " + format.numUsers + " users, " + format.numItems + " items");
+            }
+
+            FloatMatrix userMatrix = map(channel, format.userOffset(), format.numUsers, format.K);
+            FloatMatrix itemMatrix = map(channel, format.itemOffset(), format.numItems, format.K);
+
+            return new FloatFactorization<>(uIndex, iIndex, userMatrix, itemMatrix, format.K);
+        }
+    }
+
+    private static FloatMatrix map(FileChannel channel, long offset, int rows, int K) throws IOException {
+        ByteBuffer[] mapped = FactorizationFormat.map(channel, offset, rows, K, FactorizationFormat.FLOAT_BYTES);
+        FloatBuffer[] segments = new FloatBuffer[mapped.length];
+        for (int s = 0; s < mapped.length; s++) {
+            segments[s] = mapped[s].asFloatBuffer();
+        }
+
+        return new FloatMatrix(segments, rows, K, FloatMatrix.rowsPerSegment(K));
+    }
+}
@@ -0,0 +1,191 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.mf;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import static java.util.stream.IntStream.range;
+
+/**
+ * Dense matrix of single precision values, stored in row-major order either
+ * in the heap or off-heap. Since a buffer cannot exceed 2GB, rows are stored
+ * in segments of up to 1GB, no row crossing a segment boundary.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class FloatMatrix {
+
+    private final FloatBuffer[] segments;
+    private final int rows;
+    private final int columns;
+    private final int rowsPerSegment;
+
+    /**
+     * Constructor for matrices whose segments are already allocated, for
+     * instance mapped from a file.
+     *
+     * @param segments segments, each one with {@code rowsPerSegment} rows
+     * (the last one may have less)
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param rowsPerSegment number of rows in each segment
+     */
+    protected FloatMatrix(FloatBuffer[] segments, int rows, int columns, int rowsPerSegment) {
+        this.segments = segments;
+        this.rows = rows;
+        this.columns = columns;
+        this.rowsPerSegment = rowsPerSegment;
+    }
+
+    /**
+     * Returns the maximum number of rows in each segment for a number of
+     * columns.
+     *
+     * @param columns number of columns
+     * @return number of rows in each segment
+     */
+    public static int rowsPerSegment(int columns) {
+        return FactorizationFormat.rowsPerSegment(columns, Float.BYTES);
+    }
+
+    /**
+     * Creates a matrix of zeros.
+     *
+     * @param rows number of rows
+     * @param columns number of columns
+     * @param direct whether the matrix is stored off-heap or not
+     * @return a matrix of zeros
+     */
+    public static FloatMatrix allocate(int rows, int columns, boolean direct) {
+        int rowsPerSegment = rowsPerSegment(columns);
+        FloatBuffer[] segments = new FloatBuffer[(rows + rowsPerSegment - 1) / rowsPerSegment];
+        for (int s = 0; s < segments.length; s++) {
+            int length = Math.min(rowsPerSegment, rows - s * rowsPerSegment) * columns;
+            if (direct) {
+                segments[s] = ByteBuffer.allocateDirect(length * Float.BYTES).order(ByteOrder.nativeOrder()).asFloatBuffer();
+            } else {
+                segments[s] = FloatBuffer.allocate(length);
+            }
+        }
+
+        return new FloatMatrix(segments, rows, columns, rowsPerSegment);
+    }
+
+    /**
+     * Creates a single precision copy of a matrix.
+     *
+     * @param matrix matrix to be copied
+     * @param direct whether the copy is stored off-heap or not
+     * @return a single precision copy of the matrix
+     */
+    public static FloatMatrix of(DoubleMatrix2D matrix, boolean direct) {
+        FloatMatrix m = allocate(matrix.rows(), matrix.columns(), direct);
+        range(0, m.rows).parallel().forEach(row -> {
+            for (int column = 0; column < m.columns; column++) {
+                m.set(row, column, (float) matrix.getQuick(row, column));
+            }
+        });
+
+        return m;
+    }
+
+    /**
+     * Returns the number of rows.
+     *
+     * @return number of rows
+     */
+    public int rows() {
+        return rows;
+    }
+
+    /**
+     * Returns the number of columns.
+     *
+     * @return number of columns
+     */
+    public int columns() {
+        return columns;
+    }
+
+    /**
+     * Returns the value of a cell.
+     *
+     * @param row row of the cell
+     * @param column column of the cell
+     * @return value of the cell
+     */
+    public float get(int row, int column) {
+        return segments[row / rowsPerSegment].get((row % rowsPerSegment) * columns + column);
+    }
+
+    /**
+     * Sets the value of a cell.
+     *
+     * @param row row of the cell
+     * @param column column of the cell
+     * @param v new value of the cell
+     */
+    public void set(int row, int column, float v) {
+        segments[row / rowsPerSegment].put((row % rowsPerSegment) * columns + column, v);
+    }
+
+    /**
+     * Copies a row into an array.
+     *
+     * @param row row to be copied
+     * @param dst destination array
+     * @param offset position of the destination array where the row is
+     * copied
+     */
+    public void getRow(int row, float[] dst, int offset) {
+        FloatBuffer segment = segments[row / rowsPerSegment].duplicate();
+        segment.position((row % rowsPerSegment) * columns);
+        segment.get(dst, offset, columns);
+    }
+
+    /**
+     * Returns a copy of a row.
+     *
+     * @param row row to be copied
+     * @return a copy of the row
+     */
+    public float[] getRow(int row) {
+        float[] v = new float[columns];
+        getRow(row, v, 0);
+        return v;
+    }
+
+    /**
+     * Calculates the inner product of a row with a vector.
+     *
+     * @param row row of the matrix
+     * @param q vector with as many values as columns
+     * @return inner product of the row and the vector
+     */
+    public double dot(int row, float[] q) {
+        FloatBuffer segment = segments[row / rowsPerSegment];
+        int base = (row % rowsPerSegment) * columns;
+        double product = 0.0;
+        for (int k = 0; k < columns; k++) {
+            product += segment.get(base + k) * q[k];
+        }
+        return product;
+    }
+}
@@ -0,0 +1,198 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.mf.als;
+
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.function.DoubleUnaryOperator;
+
+/**
+ * Implicit matrix factorization of Hu, Koren and Volinsky (see
+ * {@link HKVFactorizer}) in which the least-squares system of each user/item
+ * is solved approximately by a few steps of the conjugate gradient method,
+ * warm-started from its current vector, as proposed by Takács et al.
+ *
+ * The matrix of the system of a user is never built: its products with a
+ * vector are calculated from the Gramian of the item matrix, which is shared
+ * by all users, and the vectors of the items of the user. Therefore, no K x K
+ * matrix is created per user or item, and each step costs O(K^2 + n K) for a
+ * user with n preferences instead of the O(K^3 + n K^2) of a direct solution.
+ *
+ * G. Takács, I. Pilászy, D. Tikk. Applications of the conjugate gradient
+ * method for implicit feedback collaborative filtering. RecSys 2011.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class CGHKVFactorizer<U, I> extends HKVFactorizer<U, I> {
+
+    private final double lambdaP;
+    private final double lambdaQ;
+    private final DoubleUnaryOperator confidence;
+    private final int numSteps;
+
+    /**
+     * Constructor. Same regularization factor for user and item matrices.
+     *
+     * @param lambda regularization factor
+     * @param confidence confidence function
+     * @param numIter number of iterations
+     * @param numSteps number of conjugate gradient steps per user/item in
+     * each iteration
+     */
+    public CGHKVFactorizer(double lambda, DoubleUnaryOperator confidence, int numIter, int numSteps) {
+        this(lambda, lambda, confidence, numIter, numSteps);
+    }
+
+    /**
+     * Constructor. Different regularization factors for user and item matrices.
+     *
+     * @param lambdaP regularization factor for user matrix
+     * @param lambdaQ regularization factor for item matrix
+     * @param confidence confidence function
+     * @param numIter number of iterations
+     * @param numSteps number of conjugate gradient steps per user/item in
+     * each iteration
+     */
+    public CGHKVFactorizer(double lambdaP, double lambdaQ, DoubleUnaryOperator confidence, int numIter, int numSteps) {
+        super(lambdaP, lambdaQ, confidence, numIter);
+        this.lambdaP = lambdaP;
+        this.lambdaQ = lambdaQ;
+        this.confidence = confidence;
+        this.numSteps = numSteps;
+    }
+
+    @Override
+    public void set_minP(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, FastPreferenceData<U, I, ?> data) {
+        set_min(p, q, confidence, lambdaP, numSteps, data);
+    }
+
+    @Override
+    public void set_minQ(final DenseDoubleMatrix2D q, final DenseDoubleMatrix2D p, FastPreferenceData<U, I, ?> data) {
+        set_min(q, p, confidence, lambdaQ, numSteps, new TransposedPreferenceData<>(data));
+    }
+
+    private static <U, I, O> void set_min(final DenseDoubleMatrix2D p, final DenseDoubleMatrix2D q, DoubleUnaryOperator confidence, double lambda, int numSteps, FastPreferenceData<U, I, O> data) {
+        final int K = p.columns();
+
+        DenseDoubleMatrix2D gramian = new DenseDoubleMatrix2D(K, K);
+        q.zMult(q, gramian, 1.0, 0.0, true, false);
+        double[] G = new double[K * K];
+        for (int k1 = 0; k1 < K; k1++) {
+            for (int k2 = 0; k2 < K; k2++) {
+                G[k1 * K + k2] = gramian.getQuick(k1, k2);
+            }
+            G[k1 * K + k1] += lambda;
+        }
+
+        data.getUidxWithPreferences().parallel().forEach(uidx -> {
+            double[] x = new double[K];
+            double[] r = new double[K];
+            double[] d = new double[K];
+            double[] Ad = new double[K];
+            for (int k = 0; k < K; k++) {
+                x[k] = p.getQuick(uidx, k);
+            }
+
+            // r = b - A x, where b = sum_i c_ui r_ui q_i
+            product(G, q, confidence, data, uidx, x, r, K);
+            for (int k = 0; k < K; k++) {
+                r[k] = -r[k];
+            }
+            IntIterator iidxs = data.getUidxIidxs(uidx);
+            DoubleIterator ivs = data.getUidxVs(uidx);
+            while (iidxs.hasNext()) {
+                int iidx = iidxs.nextInt();
+                double rui = ivs.nextDouble();
+                double w = confidence.applyAsDouble(rui) * rui;
+                for (int k = 0; k < K; k++) {
+                    r[k] += w * q.getQuick(iidx, k);
+                }
+            }
+
+            System.arraycopy(r, 0, d, 0, K);
+            double rr = dot(r, r, K);
+            for (int step = 0; step < numSteps && rr > 0; step++) {
+                product(G, q, confidence, data, uidx, d, Ad, K);
+                double dAd = dot(d, Ad, K);
+                if (dAd <= 0) {
+                    break;
+                }
+                double alpha = rr / dAd;
+                for (int k = 0; k < K; k++) {
+                    x[k] += alpha * d[k];
+                    r[k] -= alpha * Ad[k];
+                }
+                double rrNew = dot(r, r, K);
+                double beta = rrNew / rr;
+                for (int k = 0; k < K; k++) {
+                    d[k] = r[k] + beta * d[k];
+                }
+                rr = rrNew;
+            }
+
+            for (int k = 0; k < K; k++) {
+                p.setQuick(uidx, k, x[k]);
+            }
+        });
+    }
+
+    /**
+     * Calculates y = A v, where A = G + sum_i (c_ui - 1) q_i q_i^T is the
+     * matrix of the system of a user and G already includes the
+     * regularization.
+     */
+    private static <U, I, O> void product(double[] G, DenseDoubleMatrix2D q, DoubleUnaryOperator confidence, FastPreferenceData<U, I, O> data, int uidx, double[] v, double[] y, int K) {
+        for (int k1 = 0; k1 < K; k1++) {
+            double s = 0.0;
+            int base = k1 * K;
+            for (int k2 = 0; k2 < K; k2++) {
+                s += G[base + k2] * v[k2];
+            }
+            y[k1] = s;
+        }
+
+        IntIterator iidxs = data.getUidxIidxs(uidx);
+        DoubleIterator ivs = data.getUidxVs(uidx);
+        while (iidxs.hasNext()) {
+            int iidx = iidxs.nextInt();
+            double cui = confidence.applyAsDouble(ivs.nextDouble());
+            double qv = 0.0;
+            for (int k = 0; k < K; k++) {
+                qv += q.getQuick(iidx, k) * v[k];
+            }
+            double w = (cui - 1.0) * qv;
+            for (int k = 0; k < K; k++) {
+                y[k] += w * q.getQuick(iidx, k);
+            }
+        }
+    }
+
+    private static double dot(double[] a, double[] b, int K) {
+        double s = 0.0;
+        for (int k = 0; k < K; k++) {
+            s += a[k] * b[k];
+        }
+        return s;
+    }
+}
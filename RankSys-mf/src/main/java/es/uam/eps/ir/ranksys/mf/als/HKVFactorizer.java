@@ -25,6 +25,8 @@ import cern.colt.matrix.linalg.Algebra;
 import cern.colt.matrix.linalg.LUDecompositionQuick;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import java.util.function.DoubleUnaryOperator;
 
 /**
@@ -77,12 +79,15 @@ public class HKVFactorizer<U, I> extends ALSFactorizer<U, I> {
             DoubleMatrix1D pu = p.viewRow(uidx);
             DoubleMatrix1D su = q.zMult(pu, null);
             
-            double err1 = data.getUidxPreferences(uidx).mapToDouble(iv -> {
-                double rui = iv.v;
-                double sui = su.getQuick(iv.idx);
+            double err1 = 0.0;
+            IntIterator iidxs = data.getUidxIidxs(uidx);
+            DoubleIterator ivs = data.getUidxVs(uidx);
+            while (iidxs.hasNext()) {
+                double rui = ivs.nextDouble();
+                double sui = su.getQuick(iidxs.nextInt());
                 double cui = confidence.applyAsDouble(rui);
-                return cui * (rui - sui) * (rui - sui) - confidence.applyAsDouble(0) * sui * sui;
-            }).sum();
+                err1 += cui * (rui - sui) * (rui - sui) - confidence.applyAsDouble(0) * sui * sui;
+            }
             
             double err2 = confidence.applyAsDouble(0) * su.assign(x -> x * x).zSum();
             
@@ -124,9 +129,7 @@ public class HKVFactorizer<U, I> extends ALSFactorizer<U, I> {
             A.assign(A1P);
             b.assign(0.0);
 
-            data.getUidxPreferences(uidx).forEach(iv -> {
-                int iidx = iv.idx;
-                double rui = iv.v;
+            data.forEachUidxPref(uidx, (iidx, rui) -> {
                 double cui = confidence.applyAsDouble(rui);
 
                 DoubleMatrix1D qi = q.viewRow(iidx);
@@ -21,12 +21,12 @@ import cern.colt.matrix.DoubleMatrix1D;
 import cern.colt.matrix.DoubleMatrix2D;
 import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import cern.colt.matrix.linalg.EigenvalueDecomposition;
-import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
 import es.uam.eps.ir.ranksys.fast.preference.TransposedPreferenceData;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import static java.lang.Math.sqrt;
 import java.util.function.DoubleUnaryOperator;
-import java.util.stream.Stream;
 
 /**
  * Fast ALS-based factorization of Pilászy, Zibriczky and Tikk.
@@ -80,12 +80,15 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I> {
             DoubleMatrix1D pu = p.viewRow(uidx);
             DoubleMatrix1D su = q.zMult(pu, null);
             
-            double err1 = data.getUidxPreferences(uidx).mapToDouble(iv -> {
-                double rui = iv.v;
-                double sui = su.getQuick(iv.idx);
+            double err1 = 0.0;
+            IntIterator iidxs = data.getUidxIidxs(uidx);
+            DoubleIterator ivs = data.getUidxVs(uidx);
+            while (iidxs.hasNext()) {
+                double rui = ivs.nextDouble();
+                double sui = su.getQuick(iidxs.nextInt());
                 double cui = confidence.applyAsDouble(rui);
-                return cui * (rui - sui) * (rui - sui) - confidence.applyAsDouble(0) * sui * sui;
-            }).sum();
+                err1 += cui * (rui - sui) * (rui - sui) - confidence.applyAsDouble(0) * sui * sui;
+            }
             
             double err2 = confidence.applyAsDouble(0) * su.assign(x -> x * x).zSum();
             
@@ -109,7 +112,7 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I> {
         DoubleMatrix2D gt = getGt(p, q, lambda);
 
         data.getUidxWithPreferences().parallel().forEach(uidx -> {
-            prepareRR1(1, p.viewRow(uidx), gt, q, data.numItems(uidx), data.getUidxPreferences(uidx), confidence, lambda);
+            prepareRR1(1, p.viewRow(uidx), gt, q, data.numItems(uidx), data.getUidxIidxs(uidx), data.getUidxVs(uidx), confidence, lambda);
         });
     }
 
@@ -133,26 +136,28 @@ public class PZTFactorizer<U, I> extends ALSFactorizer<U, I> {
         return gt;
     }
 
-    private static <O> void prepareRR1(int L, DoubleMatrix1D w, DoubleMatrix2D gt, DoubleMatrix2D q, int N, Stream<IdxPref<O>> prefs, DoubleUnaryOperator confidence, double lambda) {
+    private static void prepareRR1(int L, DoubleMatrix1D w, DoubleMatrix2D gt, DoubleMatrix2D q, int N, IntIterator iidxs, DoubleIterator ivs, DoubleUnaryOperator confidence, double lambda) {
         int K = (int) w.size();
 
         double[][] x = new double[K + N][K];
         double[] y = new double[K + N];
         double[] c = new double[K + N];
-        int[] j = new int[1];
+        int j = 0;
         for (int k = 0; k < K; k++) {
-            gt.viewColumn(k).toArray(x[j[0]]);
-            y[j[0]] = 0.0;
-            c[j[0]] = 1.0;
-            j[0]++;
+            gt.viewColumn(k).toArray(x[j]);
+            y[j] = 0.0;
+            c[j] = 1.0;
+            j++;
+        }
+        while (iidxs.hasNext()) {
+            int iidx = iidxs.nextInt();
+            double rui = ivs.nextDouble();
+            q.viewRow(iidx).toArray(x[j]);
+            double Cui = confidence.applyAsDouble(rui);
+            y[j] = (Cui * rui) / (Cui - 1);
+            c[j] = Cui - 1;
+            j++;
         }
-        prefs.forEach(iv -> {
-            q.viewRow(iv.idx).toArray(x[j[0]]);
-            double Cui = confidence.applyAsDouble(iv.v);
-            y[j[0]] = (Cui * iv.v) / (Cui - 1);
-            c[j[0]] = Cui - 1;
-            j[0]++;
-        });
         
         doRR1(L, w, x, y, c, lambda);
     }
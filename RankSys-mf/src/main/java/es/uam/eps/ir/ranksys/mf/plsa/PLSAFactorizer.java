@@ -29,8 +29,11 @@ import es.uam.eps.ir.ranksys.fast.preference.IdxPref;
 import es.uam.eps.ir.ranksys.mf.Factorization;
 import es.uam.eps.ir.ranksys.mf.Factorizer;
 import es.uam.eps.ir.ranksys.mf.als.ALSFactorizer;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
@@ -74,9 +77,13 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
         double error = data.getUidxWithPreferences().parallel().mapToDouble(uidx -> {
             DoubleMatrix1D pU_z = pu_z.viewRow(uidx);
             DoubleMatrix1D pUi = piz.zMult(pU_z, null);
-            return data.getUidxPreferences(uidx).mapToDouble(iv -> {
-                return -iv.v * pUi.getQuick(iv.idx);
-            }).sum();
+            double err = 0.0;
+            IntIterator iidxs = data.getUidxIidxs(uidx);
+            DoubleIterator ivs = data.getUidxVs(uidx);
+            while (iidxs.hasNext()) {
+                err -= ivs.nextDouble() * pUi.getQuick(iidxs.nextInt());
+            }
+            return err;
         }).sum();
 
         return error;
@@ -240,6 +247,36 @@ public class PLSAFactorizer<U, I> extends Factorizer<U, I> {
                     .map(pref -> new IdxPref<>(pref.idx, pref.v, getQz(pref.idx, iidx)));
         }
 
+        @Override
+        public IntIterator getUidxIidxs(int uidx) {
+            return data.getUidxIidxs(uidx);
+        }
+
+        @Override
+        public DoubleIterator getUidxVs(int uidx) {
+            return data.getUidxVs(uidx);
+        }
+
+        @Override
+        public IntIterator getIidxUidxs(int iidx) {
+            return data.getIidxUidxs(iidx);
+        }
+
+        @Override
+        public DoubleIterator getIidxVs(int iidx) {
+            return data.getIidxVs(iidx);
+        }
+
+        @Override
+        public void forEachUidxPref(int uidx, IntDoubleConsumer consumer) {
+            data.forEachUidxPref(uidx, consumer);
+        }
+
+        @Override
+        public void forEachIidxPref(int iidx, IntDoubleConsumer consumer) {
+            data.forEachIidxPref(iidx, consumer);
+        }
+
         @Override
         public int numPreferences() {
             return data.numPreferences();
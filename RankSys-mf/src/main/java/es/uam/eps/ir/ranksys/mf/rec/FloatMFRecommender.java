@@ -0,0 +1,178 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.mf.rec;
+
+import es.uam.eps.ir.ranksys.fast.FastRecommendation;
+import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.mf.FloatFactorization;
+import es.uam.eps.ir.ranksys.mf.FloatMatrix;
+import es.uam.eps.ir.ranksys.rec.fast.AbstractFastRecommender;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+
+/**
+ * Matrix factorization recommender over a single precision factorization.
+ * Scores are calculated as the inner product of user and item vectors. Batch
+ * recommendations score a block of users against tiles of the item matrix, so
+ * that the item matrix is read once per block of users rather than once per
+ * user.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <U> type of the users
+ * @param <I> type of the items
+ */
+public class FloatMFRecommender<U, I> extends AbstractFastRecommender<U, I> {
+
+    /**
+     * Number of cells of the item matrix in each of the tiles that are scored
+     * at once in batch recommendations.
+     */
+    public static final int TILE_SIZE = 1 << 15;
+
+    private final FloatFactorization<U, I> factorization;
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex fast user index
+     * @param iIndex fast item index
+     * @param factorization single precision matrix factorization
+     */
+    public FloatMFRecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, FloatFactorization<U, I> factorization) {
+        super(uIndex, iIndex);
+        this.factorization = factorization;
+    }
+
+    @Override
+    public FastRecommendation getRecommendation(int uidx, int maxLength, IntPredicate filter) {
+        float[] pu = uidx < 0 ? null : factorization.getUserVector(uidx2user(uidx));
+        if (pu == null) {
+            return new FastRecommendation(uidx, new ArrayList<>());
+        }
+
+        FloatMatrix itemMatrix = factorization.getItemMatrix();
+        int numItems = itemMatrix.rows();
+        if (maxLength == 0) {
+            maxLength = numItems;
+        }
+        IntDoubleTopN topN = new IntDoubleTopN(maxLength);
+
+        double min = Double.NEGATIVE_INFINITY;
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            if (filter.test(iidx)) {
+                double score = itemMatrix.dot(iidx, pu);
+                if (score >= min && topN.add(iidx, score) && topN.size() == maxLength) {
+                    min = topN.peek().getDoubleValue();
+                }
+            }
+        }
+
+        return new FastRecommendation(uidx, toList(topN));
+    }
+
+    @Override
+    public List<FastRecommendation> getRecommendations(int[] uidxs, int maxLength, IntFunction<IntPredicate> filters) {
+        if (maxLength == 0) {
+            return super.getRecommendations(uidxs, maxLength, filters);
+        }
+
+        int K = factorization.getK();
+        FloatMatrix itemMatrix = factorization.getItemMatrix();
+        int numItems = itemMatrix.rows();
+
+        int[] rows = new int[uidxs.length];
+        int numRows = 0;
+        for (int b = 0; b < uidxs.length; b++) {
+            rows[b] = -1;
+            if (uidxs[b] >= 0 && factorization.user2uidx(uidx2user(uidxs[b])) >= 0) {
+                rows[b] = numRows++;
+            }
+        }
+
+        float[] userBlock = new float[numRows * K];
+        IntPredicate[] blockFilters = new IntPredicate[numRows];
+        IntDoubleTopN[] topNs = new IntDoubleTopN[numRows];
+        double[] mins = new double[numRows];
+        for (int b = 0; b < uidxs.length; b++) {
+            if (rows[b] >= 0) {
+                int row = rows[b];
+                factorization.getUserMatrix().getRow(factorization.user2uidx(uidx2user(uidxs[b])), userBlock, row * K);
+                blockFilters[row] = filters.apply(uidxs[b]);
+                topNs[row] = new IntDoubleTopN(maxLength);
+                mins[row] = Double.NEGATIVE_INFINITY;
+            }
+        }
+
+        if (numRows > 0) {
+            int tileSize = Math.max(1, TILE_SIZE / Math.max(1, K));
+            float[] tile = new float[Math.min(tileSize, numItems) * K];
+            for (int from = 0; from < numItems; from += tileSize) {
+                int to = Math.min(numItems, from + tileSize);
+                for (int iidx = from; iidx < to; iidx++) {
+                    itemMatrix.getRow(iidx, tile, (iidx - from) * K);
+                }
+                for (int row = 0; row < numRows; row++) {
+                    IntPredicate filter = blockFilters[row];
+                    IntDoubleTopN topN = topNs[row];
+                    double min = mins[row];
+                    int ub = row * K;
+                    for (int iidx = from; iidx < to; iidx++) {
+                        if (!filter.test(iidx)) {
+                            continue;
+                        }
+                        int ib = (iidx - from) * K;
+                        double score = 0.0;
+                        for (int k = 0; k < K; k++) {
+                            score += userBlock[ub + k] * tile[ib + k];
+                        }
+                        if (score >= min && topN.add(iidx, score) && topN.size() == maxLength) {
+                            min = topN.peek().getDoubleValue();
+                        }
+                    }
+                    mins[row] = min;
+                }
+            }
+        }
+
+        List<FastRecommendation> recommendations = new ArrayList<>(uidxs.length);
+        for (int b = 0; b < uidxs.length; b++) {
+            if (rows[b] < 0) {
+                recommendations.add(new FastRecommendation(uidxs[b], new ArrayList<>()));
+            } else {
+                recommendations.add(new FastRecommendation(uidxs[b], toList(topNs[rows[b]])));
+            }
+        }
+
+        return recommendations;
+    }
+
+    private static List<IdxDouble> toList(IntDoubleTopN topN) {
+        topN.sort();
+
+        return topN.reverseStream()
+                .map(e -> new IdxDouble(e))
+                .collect(Collectors.toList());
+    }
+}
@@ -18,6 +18,8 @@
 package es.uam.eps.ir.ranksys.mf.rec;
 
 import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
 import es.uam.eps.ir.ranksys.fast.IdxDouble;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
@@ -27,12 +29,16 @@ import es.uam.eps.ir.ranksys.rec.fast.AbstractFastRecommender;
 import es.uam.eps.ir.ranksys.mf.Factorization;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.IntFunction;
 import java.util.function.IntPredicate;
 import java.util.stream.Collectors;
 
 /**
  * Matrix factorization recommender. Scores are calculated as the inner product
- * of user and item vectors.
+ * of user and item vectors. Optionally, the top-N items can be retrieved from a
+ * {@link MIPSIndex} instead of scoring all the items. Batch recommendations
+ * multiply a block of user vectors by tiles of the item matrix, so that the
+ * item matrix is read once per block of users rather than once per user.
  *
  * @author Saúl Vargas (saul.vargas@uam.es)
  * 
@@ -41,7 +47,14 @@ import java.util.stream.Collectors;
  */
 public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> {
 
+    /**
+     * Number of cells of the item matrix in each of the tiles that are
+     * multiplied at once in batch recommendations.
+     */
+    public static final int TILE_SIZE = 1 << 15;
+
     private final Factorization<U, I> factorization;
+    private final MIPSIndex index;
 
     /**
      * Constructor.
@@ -51,8 +64,23 @@ public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> {
      * @param factorization matrix factorization
      */
     public MFRecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, Factorization<U, I> factorization) {
+        this(uIndex, iIndex, factorization, null);
+    }
+
+    /**
+     * Constructor that retrieves the top-N items from a maximum inner product
+     * search index. Recommendations without length limit score all the items.
+     *
+     * @param uIndex fast user index
+     * @param iIndex fast item index
+     * @param factorization matrix factorization
+     * @param index maximum inner product search index over the item vectors
+     * of the factorization, or null to score all the items
+     */
+    public MFRecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex, Factorization<U, I> factorization, MIPSIndex index) {
         super(uIndex, iIndex);
         this.factorization = factorization;
+        this.index = index;
     }
 
     @Override
@@ -64,6 +92,10 @@ public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> {
             return new FastRecommendation(uidx, new ArrayList<>());
         }
 
+        if (index != null && maxLength > 0 && maxLength < index.numItems()) {
+            return new FastRecommendation(uidx, index.search(pu.toArray(), maxLength, filter));
+        }
+
         if (maxLength == 0) {
             maxLength = factorization.numItems();
         }
@@ -84,4 +116,72 @@ public class MFRecommender<U, I> extends AbstractFastRecommender<U, I> {
 
         return new FastRecommendation(uidx, items);
     }
+
+    @Override
+    public List<FastRecommendation> getRecommendations(int[] uidxs, int maxLength, IntFunction<IntPredicate> filters) {
+        if (index != null || maxLength == 0) {
+            return super.getRecommendations(uidxs, maxLength, filters);
+        }
+
+        int K = factorization.getK();
+        DenseDoubleMatrix2D itemMatrix = factorization.getItemMatrix();
+        int numItems = itemMatrix.rows();
+
+        int[] rows = new int[uidxs.length];
+        int numRows = 0;
+        for (int b = 0; b < uidxs.length; b++) {
+            rows[b] = -1;
+            if (uidxs[b] >= 0 && factorization.user2uidx(uidx2user(uidxs[b])) >= 0) {
+                rows[b] = numRows++;
+            }
+        }
+
+        DoubleMatrix2D userBlock = new DenseDoubleMatrix2D(numRows, K);
+        IntPredicate[] blockFilters = new IntPredicate[numRows];
+        IntDoubleTopN[] topNs = new IntDoubleTopN[numRows];
+        for (int b = 0; b < uidxs.length; b++) {
+            if (rows[b] >= 0) {
+                userBlock.viewRow(rows[b]).assign(factorization.getUserVector(uidx2user(uidxs[b])));
+                blockFilters[rows[b]] = filters.apply(uidxs[b]);
+                topNs[rows[b]] = new IntDoubleTopN(maxLength);
+            }
+        }
+
+        if (numRows > 0) {
+            int tileSize = Math.max(1, TILE_SIZE / Math.max(1, K));
+            DoubleMatrix2D scores = new DenseDoubleMatrix2D(numRows, Math.min(tileSize, numItems));
+            for (int from = 0; from < numItems; from += tileSize) {
+                int to = Math.min(numItems, from + tileSize);
+                DoubleMatrix2D tileScores = scores.viewPart(0, 0, numRows, to - from);
+                userBlock.zMult(itemMatrix.viewPart(from, 0, to - from, K), tileScores, 1.0, 0.0, false, true);
+                for (int row = 0; row < numRows; row++) {
+                    IntPredicate filter = blockFilters[row];
+                    IntDoubleTopN topN = topNs[row];
+                    double min = topN.size() < maxLength ? Double.NEGATIVE_INFINITY : topN.peek().getDoubleValue();
+                    for (int iidx = from; iidx < to; iidx++) {
+                        double score = tileScores.getQuick(row, iidx - from);
+                        if (score >= min && filter.test(iidx) && topN.add(iidx, score) && topN.size() == maxLength) {
+                            min = topN.peek().getDoubleValue();
+                        }
+                    }
+                }
+            }
+        }
+
+        List<FastRecommendation> recommendations = new ArrayList<>(uidxs.length);
+        for (int b = 0; b < uidxs.length; b++) {
+            if (rows[b] < 0) {
+                recommendations.add(new FastRecommendation(uidxs[b], new ArrayList<>()));
+            } else {
+                IntDoubleTopN topN = topNs[rows[b]];
+                topN.sort();
+                List<IdxDouble> items = topN.reverseStream()
+                        .map(e -> new IdxDouble(e))
+                        .collect(Collectors.toList());
+                recommendations.add(new FastRecommendation(uidxs[b], items));
+            }
+        }
+
+        return recommendations;
+    }
 }
@@ -0,0 +1,263 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.mf.rec;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.mf.Factorization;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntPredicate;
+import java.util.stream.Collectors;
+import static java.lang.Math.sqrt;
+import static java.util.stream.IntStream.range;
+
+/**
+ * Maximum inner product search index over the item vectors of a
+ * factorization, based on k-means cluster pruning.
+ *
+ * The item vectors are grouped by k-means (trained on a sample of the items)
+ * and each cluster is represented by its center and the distance of each of
+ * its items to the center. By Cauchy-Schwarz, the inner product of a query
+ * {@code q} with an item {@code x} of a cluster with center {@code c} is at
+ * most {@code q·c + |q| |x - c|}. A search visits the clusters in decreasing
+ * order of this bound with the radius of the cluster, and the items of each
+ * cluster from the farthest to the closest to the center, stopping as soon
+ * as the bound cannot beat the n-th best score found so far. The result is
+ * exact, not approximate.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class MIPSIndex {
+
+    private static final double SLACK = 1e-9;
+
+    private final int K;
+    private final int numItems;
+    private final double[][] centers;
+    private final int[][] iidxs;
+    private final double[][] dists;
+    private final double[][] vectors;
+
+    /**
+     * Constructor.
+     *
+     * @param factorization matrix factorization
+     * @param numClusters number of clusters, for instance the square root of
+     * the number of items
+     * @param sampleSize number of items sampled to train the clusters
+     * @param numIter number of iterations of k-means
+     * @param seed seed of the sampling of items
+     */
+    public MIPSIndex(Factorization<?, ?> factorization, int numClusters, int sampleSize, int numIter, long seed) {
+        DoubleMatrix2D itemMatrix = factorization.getItemMatrix();
+        this.K = factorization.getK();
+        this.numItems = itemMatrix.rows();
+        numClusters = Math.max(1, Math.min(numClusters, numItems));
+        sampleSize = Math.max(numClusters, Math.min(sampleSize, numItems));
+
+        // k-means on a sample of the items
+        Random rnd = new Random(seed);
+        int[] sample = range(0, numItems).toArray();
+        for (int i = 0; i < sampleSize; i++) {
+            int j = i + rnd.nextInt(numItems - i);
+            int t = sample[i];
+            sample[i] = sample[j];
+            sample[j] = t;
+        }
+        double[][] sampleVectors = new double[sampleSize][];
+        for (int i = 0; i < sampleSize; i++) {
+            sampleVectors[i] = itemMatrix.viewRow(sample[i]).toArray();
+        }
+        this.centers = new double[numClusters][];
+        for (int c = 0; c < numClusters; c++) {
+            centers[c] = sampleVectors[c].clone();
+        }
+        int[] sampleClusters = new int[sampleSize];
+        for (int iter = 0; iter < numIter; iter++) {
+            range(0, sampleSize).parallel().forEach(i -> sampleClusters[i] = closest(sampleVectors[i]));
+
+            double[][] sums = new double[numClusters][K];
+            int[] counts = new int[numClusters];
+            for (int i = 0; i < sampleSize; i++) {
+                int c = sampleClusters[i];
+                counts[c]++;
+                for (int k = 0; k < K; k++) {
+                    sums[c][k] += sampleVectors[i][k];
+                }
+            }
+            for (int c = 0; c < numClusters; c++) {
+                if (counts[c] == 0) {
+                    centers[c] = sampleVectors[rnd.nextInt(sampleSize)].clone();
+                } else {
+                    for (int k = 0; k < K; k++) {
+                        centers[c][k] = sums[c][k] / counts[c];
+                    }
+                }
+            }
+        }
+
+        // assignment of all the items
+        int[] clusters = new int[numItems];
+        double[] itemDists = new double[numItems];
+        range(0, numItems).parallel().forEach(iidx -> {
+            double[] x = itemMatrix.viewRow(iidx).toArray();
+            int c = closest(x);
+            clusters[iidx] = c;
+            itemDists[iidx] = sqrt(dist2(x, centers[c])) * (1 + SLACK) + SLACK;
+        });
+
+        int[] counts = new int[numClusters];
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            counts[clusters[iidx]]++;
+        }
+        this.iidxs = new int[numClusters][];
+        for (int c = 0; c < numClusters; c++) {
+            iidxs[c] = new int[counts[c]];
+            counts[c] = 0;
+        }
+        for (int iidx = 0; iidx < numItems; iidx++) {
+            int c = clusters[iidx];
+            iidxs[c][counts[c]++] = iidx;
+        }
+
+        // items of each cluster from the farthest to the closest to the center
+        this.dists = new double[numClusters][];
+        this.vectors = new double[numClusters][];
+        range(0, numClusters).parallel().forEach(c -> {
+            int[] ciidxs = iidxs[c];
+            IntArrays.quickSort(ciidxs, new AbstractIntComparator() {
+
+                @Override
+                public int compare(int iidx1, int iidx2) {
+                    return Double.compare(itemDists[iidx2], itemDists[iidx1]);
+                }
+            });
+            dists[c] = new double[ciidxs.length];
+            vectors[c] = new double[ciidxs.length * K];
+            for (int j = 0; j < ciidxs.length; j++) {
+                dists[c][j] = itemDists[ciidxs[j]];
+                for (int k = 0; k < K; k++) {
+                    vectors[c][j * K + k] = itemMatrix.getQuick(ciidxs[j], k);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the number of items in the index.
+     *
+     * @return number of items
+     */
+    public int numItems() {
+        return numItems;
+    }
+
+    /**
+     * Returns the items with the highest inner products with a query vector.
+     *
+     * @param q query vector, typically a user vector
+     * @param n maximum number of items to return
+     * @param filter filter of the items to be returned
+     * @return items and inner products, in decreasing order of inner product
+     */
+    public List<IdxDouble> search(double[] q, int n, IntPredicate filter) {
+        double qNorm = sqrt(dot(q, q, 0));
+        int numClusters = centers.length;
+
+        double[] centerProducts = new double[numClusters];
+        double[] bounds = new double[numClusters];
+        int[] order = new int[numClusters];
+        for (int c = 0; c < numClusters; c++) {
+            centerProducts[c] = dot(q, centers[c], 0);
+            double radius = dists[c].length == 0 ? 0.0 : dists[c][0];
+            bounds[c] = centerProducts[c] + qNorm * radius;
+            order[c] = c;
+        }
+        IntArrays.quickSort(order, new AbstractIntComparator() {
+
+            @Override
+            public int compare(int c1, int c2) {
+                return Double.compare(bounds[c2], bounds[c1]);
+            }
+        });
+
+        IntDoubleTopN topN = new IntDoubleTopN(n);
+        double threshold = Double.NEGATIVE_INFINITY;
+        for (int c : order) {
+            if (bounds[c] < threshold) {
+                break;
+            }
+            int[] ciidxs = iidxs[c];
+            double[] cdists = dists[c];
+            double[] cvectors = vectors[c];
+            for (int j = 0; j < ciidxs.length; j++) {
+                if (centerProducts[c] + qNorm * cdists[j] < threshold) {
+                    break;
+                }
+                int iidx = ciidxs[j];
+                if (!filter.test(iidx)) {
+                    continue;
+                }
+                topN.add(iidx, dot(q, cvectors, j * K));
+                if (topN.size() == n) {
+                    threshold = topN.peek().getDoubleValue();
+                }
+            }
+        }
+
+        topN.sort();
+
+        return topN.reverseStream()
+                .map(e -> new IdxDouble(e))
+                .collect(Collectors.toList());
+    }
+
+    private int closest(double[] x) {
+        int best = 0;
+        double bestDist = Double.POSITIVE_INFINITY;
+        for (int c = 0; c < centers.length; c++) {
+            double d = dist2(x, centers[c]);
+            if (d < bestDist) {
+                best = c;
+                bestDist = d;
+            }
+        }
+        return best;
+    }
+
+    private double dot(double[] q, double[] v, int offset) {
+        double product = 0.0;
+        for (int k = 0; k < K; k++) {
+            product += q[k] * v[offset + k];
+        }
+        return product;
+    }
+
+    private double dist2(double[] x, double[] y) {
+        double d = 0.0;
+        for (int k = 0; k < K; k++) {
+            double z = x[k] - y[k];
+            d += z * z;
+        }
+        return d;
+    }
+}
@@ -18,10 +18,10 @@
 package es.uam.eps.ir.ranksys.nn.item;
 
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.DenseAccumulator;
 import es.uam.eps.ir.ranksys.rec.fast.FastRankingRecommender;
 import es.uam.eps.ir.ranksys.nn.item.neighborhood.ItemNeighborhood;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import static java.lang.Math.pow;
 
 /**
@@ -74,16 +74,24 @@ public class ItemNeighborhoodRecommender<U, I> extends FastRankingRecommender<U,
 
     @Override
     protected Int2DoubleMap getScoresMap(int uidx) {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-        data.getUidxPreferences(uidx).forEach(jp -> {
-            neighborhood.getNeighbors(jp.idx).forEach(is -> {
-                double w = pow(is.v, q);
-                scoresMap.addTo(is.idx, w * jp.v);
+        DenseAccumulator scores = getScoresAccumulator(uidx);
+        Int2DoubleMap scoresMap = scores.toMap();
+        scores.reset();
+
+        return scoresMap;
+    }
+
+    @Override
+    protected DenseAccumulator getScoresAccumulator(int uidx) {
+        DenseAccumulator scores = getAccumulator();
+        data.forEachUidxPref(uidx, (jidx, jv) -> {
+            neighborhood.forEachNeighbor(jidx, (iidx, sim) -> {
+                double w = pow(sim, q);
+                scores.add(iidx, w * jv);
             });
         });
 
-        return scoresMap;
+        return scores;
     }
 
 }
@@ -17,6 +17,7 @@
  */
 package es.uam.eps.ir.ranksys.nn.item.neighborhood;
 
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.nn.neighborhood.CachedNeighborhood;
 
 /**
@@ -36,4 +37,15 @@ public class CachedItemNeighborhood<I> extends ItemNeighborhood<I> {
     public CachedItemNeighborhood(ItemNeighborhood<I> neighborhood) {
         super(neighborhood, new CachedNeighborhood(neighborhood.numItems(), neighborhood));
     }
+
+    /**
+     * Constructor that wraps an already cached neighborhood, such as the
+     * ones of {@link es.uam.eps.ir.ranksys.nn.neighborhood.AllPairsNeighborhoodBuilder}.
+     *
+     * @param iIndex fast item index
+     * @param neighborhood cached neighborhood
+     */
+    public CachedItemNeighborhood(FastItemIndex<I> iIndex, CachedNeighborhood neighborhood) {
+        super(iIndex, neighborhood);
+    }
 }
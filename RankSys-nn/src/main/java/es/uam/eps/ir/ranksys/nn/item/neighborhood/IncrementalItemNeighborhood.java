@@ -0,0 +1,61 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.item.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.fast.preference.PreferenceTriples;
+import es.uam.eps.ir.ranksys.nn.neighborhood.IncrementalNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+
+/**
+ * Item top-K neighborhood maintained incrementally. See {@link IncrementalNeighborhood}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <I> type of the items
+ */
+public class IncrementalItemNeighborhood<I> extends ItemNeighborhood<I> {
+
+    private final IncrementalNeighborhood incremental;
+
+    /**
+     * Constructor.
+     *
+     * @param iIndex fast item index
+     * @param sim vector similarity between items, over the transposed preference data
+     * @param k maximum size of neighborhood
+     */
+    public IncrementalItemNeighborhood(FastItemIndex<I> iIndex, VectorSimilarity sim, int k) {
+        this(iIndex, new IncrementalNeighborhood(sim, k));
+    }
+
+    private IncrementalItemNeighborhood(FastItemIndex<I> iIndex, IncrementalNeighborhood incremental) {
+        super(iIndex, incremental);
+        this.incremental = incremental;
+    }
+
+    /**
+     * Adds a batch of new user-item preferences and repairs the affected
+     * neighborhoods.
+     *
+     * @param preferences new preferences
+     */
+    public void update(PreferenceTriples<?> preferences) {
+        incremental.update(new PreferenceTriples<>(preferences.getIidxs(), preferences.getUidxs(), preferences.getVs(), null));
+    }
+}
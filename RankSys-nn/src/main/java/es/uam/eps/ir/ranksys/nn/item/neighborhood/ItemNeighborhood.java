@@ -19,6 +19,7 @@ package es.uam.eps.ir.ranksys.nn.item.neighborhood;
 
 import es.uam.eps.ir.ranksys.core.IdDouble;
 import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.nn.neighborhood.Neighborhood;
 import java.util.stream.Stream;
@@ -74,6 +75,11 @@ public abstract class ItemNeighborhood<I> implements Neighborhood, FastItemIndex
         return neighborhood.getNeighbors(idx);
     }
 
+    @Override
+    public void forEachNeighbor(int idx, IntDoubleConsumer consumer) {
+        neighborhood.forEachNeighbor(idx, consumer);
+    }
+
     /**
      * Returns a stream of item neighbors
      *
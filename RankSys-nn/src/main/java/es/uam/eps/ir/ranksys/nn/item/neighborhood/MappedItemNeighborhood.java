@@ -0,0 +1,61 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.item.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.nn.neighborhood.MappedNeighborhood;
+import java.io.IOException;
+
+/**
+ * Item neighborhood served from a memory-mapped file. See {@link MappedNeighborhood}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <I> type of the items
+ */
+public class MappedItemNeighborhood<I> extends ItemNeighborhood<I> {
+
+    /**
+     * Constructor.
+     *
+     * @param iIndex fast item index
+     * @param neighborhood mapped neighborhood
+     */
+    public MappedItemNeighborhood(FastItemIndex<I> iIndex, MappedNeighborhood neighborhood) {
+        super(iIndex, neighborhood);
+    }
+
+    /**
+     * Opens a binary neighborhood file of items.
+     *
+     * @param <I> type of the items
+     * @param iIndex fast item index
+     * @param path path of the binary file
+     * @return a mapped item neighborhood
+     * @throws IOException when the file does not exist, is not valid, does
+     * not match the index or IO error
+     */
+    public static <I> MappedItemNeighborhood<I> load(FastItemIndex<I> iIndex, String path) throws IOException {
+        MappedNeighborhood neighborhood = MappedNeighborhood.load(path);
+        if (neighborhood.size() != iIndex.numItems()) {
+            throw new IOException("binary neighborhood file does not match index: " + neighborhood.size() + " items");
+        }
+
+        return new MappedItemNeighborhood<>(iIndex, neighborhood);
+    }
+}
@@ -0,0 +1,69 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.item.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
+import es.uam.eps.ir.ranksys.nn.neighborhood.PrunedTopKNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+
+/**
+ * Item top-K neighborhood with pruning of candidates. See {@link PrunedTopKNeighborhood}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <I> type of the items
+ */
+public class PrunedTopKItemNeighborhood<I> extends ItemNeighborhood<I> {
+
+    private final PrunedTopKNeighborhood pruned;
+
+    /**
+     * Constructor.
+     *
+     * @param iIndex fast item index
+     * @param sim vector cosine or Jaccard similarity between items, over the transposed preference data
+     * @param k maximum size of neighborhood
+     */
+    public PrunedTopKItemNeighborhood(FastItemIndex<I> iIndex, VectorSimilarity sim, int k) {
+        this(iIndex, new PrunedTopKNeighborhood(sim, k));
+    }
+
+    private PrunedTopKItemNeighborhood(FastItemIndex<I> iIndex, PrunedTopKNeighborhood pruned) {
+        super(iIndex, pruned);
+        this.pruned = pruned;
+    }
+
+    /**
+     * Returns the number of candidate items generated so far.
+     *
+     * @return number of candidates
+     */
+    public long getNumCandidates() {
+        return pruned.getNumCandidates();
+    }
+
+    /**
+     * Returns the number of candidate items whose similarity has been fully
+     * calculated so far.
+     *
+     * @return number of verified candidates
+     */
+    public long getNumVerified() {
+        return pruned.getNumVerified();
+    }
+}
@@ -0,0 +1,258 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.DenseAccumulator;
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.nn.sim.SetSimilarity;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import static java.util.stream.IntStream.range;
+
+/**
+ * All-pairs neighborhood builder. Computes the neighborhoods of every
+ * user/item at once by a sparse product of the preference data with its
+ * transpose, instead of calling {@link VectorSimilarity#similarElems(int)}
+ * or {@link SetSimilarity#similarElems(int)} once per user/item.
+ *
+ * The rows of the product are split in blocks that are consumed by the
+ * workers of the common fork-join pool. Every worker accumulates the inner
+ * products (or intersection sizes) of a row in its own
+ * {@link DenseAccumulator}, so that no hash map is created per row. The similarity
+ * formula and the top-k or threshold selection are applied as soon as each
+ * row is complete, and the result is stored in a compact
+ * {@link CachedNeighborhood}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class AllPairsNeighborhoodBuilder {
+
+    /**
+     * Default number of rows in each block of work.
+     */
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    /**
+     * Computes the top-k neighborhoods of all users/items of a vector
+     * similarity. See {@link TopKNeighborhood}.
+     *
+     * @param sim vector similarity
+     * @param k maximum size of neighborhood
+     * @return cached neighborhood
+     */
+    public static CachedNeighborhood topK(VectorSimilarity sim, int k) {
+        return build(sim.getData(), true, vectorSimilarity(sim), () -> new TopKRow(k), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Computes the top-k neighborhoods of all users/items of a set
+     * similarity. See {@link TopKNeighborhood}.
+     *
+     * @param sim set similarity
+     * @param k maximum size of neighborhood
+     * @return cached neighborhood
+     */
+    public static CachedNeighborhood topK(SetSimilarity sim, int k) {
+        return build(sim.getData(), false, setSimilarity(sim), () -> new TopKRow(k), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Computes the threshold neighborhoods of all users/items of a vector
+     * similarity. See {@link ThresholdNeighborhood}.
+     *
+     * @param sim vector similarity
+     * @param threshold minimum value to be considered as neighbor
+     * @return cached neighborhood
+     */
+    public static CachedNeighborhood threshold(VectorSimilarity sim, double threshold) {
+        return build(sim.getData(), true, vectorSimilarity(sim), () -> new ThresholdRow(threshold), DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * Computes the threshold neighborhoods of all users/items of a set
+     * similarity. See {@link ThresholdNeighborhood}.
+     *
+     * @param sim set similarity
+     * @param threshold minimum value to be considered as neighbor
+     * @return cached neighborhood
+     */
+    public static CachedNeighborhood threshold(SetSimilarity sim, double threshold) {
+        return build(sim.getData(), false, setSimilarity(sim), () -> new ThresholdRow(threshold), DEFAULT_BLOCK_SIZE);
+    }
+
+    private static PairSimilarity vectorSimilarity(VectorSimilarity sim) {
+        FastPreferenceData<?, ?, ?> data = sim.getData();
+        double[] norm2s = new double[data.numUsers()];
+        data.getUidxWithPreferences().forEach(idx -> norm2s[idx] = sim.getNorm2(idx));
+
+        return (idx1, product, idx2) -> sim.productSimilarity(product, norm2s[idx1], norm2s[idx2]);
+    }
+
+    private static PairSimilarity setSimilarity(SetSimilarity sim) {
+        FastPreferenceData<?, ?, ?> data = sim.getData();
+        int[] sizes = new int[data.numUsers()];
+        data.getUidxWithPreferences().forEach(idx -> sizes[idx] = data.numItems(idx));
+
+        return (idx1, product, idx2) -> sim.intersectionSimilarity((int) product, sizes[idx1], sizes[idx2]);
+    }
+
+    private static CachedNeighborhood build(FastPreferenceData<?, ?, ?> data, boolean useValues, PairSimilarity sim, Supplier<Row> rows, int blockSize) {
+        int n = data.numUsers();
+        int numBlocks = (n + blockSize - 1) / blockSize;
+        int numWorkers = Math.max(1, Math.min(numBlocks, ForkJoinPool.getCommonPoolParallelism()));
+
+        int[][] rowIdxs = new int[n][];
+        double[][] rowSims = new double[n][];
+        AtomicInteger nextBlock = new AtomicInteger();
+
+        range(0, numWorkers).parallel().forEach(w -> {
+            DenseAccumulator products = new DenseAccumulator(n);
+            Row row = rows.get();
+
+            int block;
+            while ((block = nextBlock.getAndIncrement()) < numBlocks) {
+                int to = Math.min(n, (block + 1) * blockSize);
+                for (int idx1 = block * blockSize; idx1 < to; idx1++) {
+                    IntIterator iidxs = data.getUidxIidxs(idx1);
+                    DoubleIterator ivs = useValues ? data.getUidxVs(idx1) : null;
+                    while (iidxs.hasNext()) {
+                        int iidx = iidxs.nextInt();
+                        double iv = useValues ? ivs.nextDouble() : 1.0;
+                        IntIterator vidxs = data.getIidxUidxs(iidx);
+                        DoubleIterator vvs = useValues ? data.getIidxVs(iidx) : null;
+                        while (vidxs.hasNext()) {
+                            int idx2 = vidxs.nextInt();
+                            double vv = useValues ? vvs.nextDouble() : 1.0;
+                            products.add(idx2, iv * vv);
+                        }
+                    }
+
+                    for (int t = 0; t < products.size(); t++) {
+                        int idx2 = products.getTouched(t);
+                        if (idx2 != idx1) {
+                            row.add(idx2, sim.similarity(idx1, products.get(idx2), idx2));
+                        }
+                    }
+                    products.reset();
+
+                    row.emit(idx1, rowIdxs, rowSims);
+                }
+            }
+        });
+
+        int[] offsets = new int[n + 1];
+        for (int idx = 0; idx < n; idx++) {
+            offsets[idx + 1] = offsets[idx] + rowIdxs[idx].length;
+        }
+        int[] idxs = new int[offsets[n]];
+        double[] sims = new double[offsets[n]];
+        range(0, n).parallel().forEach(idx -> {
+            System.arraycopy(rowIdxs[idx], 0, idxs, offsets[idx], rowIdxs[idx].length);
+            System.arraycopy(rowSims[idx], 0, sims, offsets[idx], rowSims[idx].length);
+            rowIdxs[idx] = null;
+            rowSims[idx] = null;
+        });
+
+        return new CachedNeighborhood(offsets, idxs, sims);
+    }
+
+    private interface PairSimilarity {
+
+        double similarity(int idx1, double product, int idx2);
+    }
+
+    private static abstract class Row {
+
+        public abstract void add(int idx, double sim);
+
+        public abstract void emit(int idx, int[][] rowIdxs, double[][] rowSims);
+    }
+
+    private static class TopKRow extends Row {
+
+        private final int k;
+        private IntDoubleTopN topN;
+
+        public TopKRow(int k) {
+            this.k = k;
+            this.topN = new IntDoubleTopN(k);
+        }
+
+        @Override
+        public void add(int idx, double sim) {
+            topN.add(idx, sim);
+        }
+
+        @Override
+        public void emit(int idx, int[][] rowIdxs, double[][] rowSims) {
+            topN.sort();
+            int[] idxs = new int[topN.size()];
+            double[] sims = new double[topN.size()];
+            Iterator<Int2DoubleMap.Entry> it = topN.reverseIterator();
+            for (int i = 0; it.hasNext(); i++) {
+                Int2DoubleMap.Entry e = it.next();
+                idxs[i] = e.getIntKey();
+                sims[i] = e.getDoubleValue();
+            }
+            rowIdxs[idx] = idxs;
+            rowSims[idx] = sims;
+
+            if (topN.size() > 0) {
+                topN = new IntDoubleTopN(k);
+            }
+        }
+    }
+
+    private static class ThresholdRow extends Row {
+
+        private final double threshold;
+        private final IntArrayList idxl;
+        private final DoubleArrayList siml;
+
+        public ThresholdRow(double threshold) {
+            this.threshold = threshold;
+            this.idxl = new IntArrayList();
+            this.siml = new DoubleArrayList();
+        }
+
+        @Override
+        public void add(int idx, double sim) {
+            if (sim > threshold) {
+                idxl.add(idx);
+                siml.add(sim);
+            }
+        }
+
+        @Override
+        public void emit(int idx, int[][] rowIdxs, double[][] rowSims) {
+            rowIdxs[idx] = idxl.toIntArray();
+            rowSims[idx] = siml.toDoubleArray();
+            idxl.clear();
+            siml.clear();
+        }
+    }
+}
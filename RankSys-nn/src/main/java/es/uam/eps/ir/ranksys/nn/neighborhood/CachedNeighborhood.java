@@ -19,21 +19,25 @@ package es.uam.eps.ir.ranksys.nn.neighborhood;
 
 import es.uam.eps.ir.ranksys.fast.IdxDouble;
 import es.uam.eps.ir.ranksys.fast.IdxObject;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
 import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
 import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.io.IOException;
 import static java.util.stream.IntStream.range;
 import java.util.stream.Stream;
 import static java.util.stream.Stream.empty;
 
 /**
- * Cached neighborhood. Stores user neighborhoods.
+ * Cached neighborhood. Stores user neighborhoods in compressed sparse rows:
+ * the neighbors of each user/item are kept contiguously in shared arrays.
  *
  * @author Saúl Vargas (saul.vargas@uam.es)
  */
 public class CachedNeighborhood implements Neighborhood {
 
-    private final IntArrayList[] idxla;
-    private final DoubleArrayList[] simla;
+    private final int[] offsets;
+    private final int[] idxs;
+    private final double[] sims;
 
     /**
      * Constructor that calculates and caches neighborhoods.
@@ -42,20 +46,7 @@ public class CachedNeighborhood implements Neighborhood {
      * @param neighborhood generic neighborhood to be cached
      */
     public CachedNeighborhood(int n, Neighborhood neighborhood) {
-
-        this.idxla = new IntArrayList[n];
-        this.simla = new DoubleArrayList[n];
-
-        range(0, n).parallel().forEach(idx -> {
-            IntArrayList idxl = new IntArrayList();
-            DoubleArrayList siml = new DoubleArrayList();
-            neighborhood.getNeighbors(idx).forEach(is -> {
-                idxl.add(is.idx);
-                siml.add(is.v);
-            });
-            idxla[idx] = idxl;
-            simla[idx] = siml;
-        });
+        this(n, range(0, n).parallel().mapToObj(idx -> new IdxObject<>(idx, neighborhood.getNeighbors(idx))));
     }
 
     /**
@@ -66,8 +57,8 @@ public class CachedNeighborhood implements Neighborhood {
      */
     public CachedNeighborhood(int n, Stream<IdxObject<Stream<IdxDouble>>> neighborhoods) {
 
-        this.idxla = new IntArrayList[n];
-        this.simla = new DoubleArrayList[n];
+        IntArrayList[] idxla = new IntArrayList[n];
+        DoubleArrayList[] simla = new DoubleArrayList[n];
 
         neighborhoods.forEach(un -> {
             int idx = un.idx;
@@ -80,19 +71,111 @@ public class CachedNeighborhood implements Neighborhood {
             idxla[idx] = idxl;
             simla[idx] = siml;
         });
+
+        this.offsets = new int[n + 1];
+        for (int idx = 0; idx < n; idx++) {
+            offsets[idx + 1] = offsets[idx] + (idxla[idx] == null ? 0 : idxla[idx].size());
+        }
+        this.idxs = new int[offsets[n]];
+        this.sims = new double[offsets[n]];
+        range(0, n).parallel()
+                .filter(idx -> idxla[idx] != null)
+                .forEach(idx -> {
+                    idxla[idx].getElements(0, idxs, offsets[idx], idxla[idx].size());
+                    simla[idx].getElements(0, sims, offsets[idx], simla[idx].size());
+                });
+    }
+
+    /**
+     * Constructor that wraps already cached neighborhoods in compressed sparse
+     * rows. The neighbors of the user/item idx are in positions offsets[idx]
+     * to offsets[idx + 1] of the arrays of neighbors and similarities.
+     *
+     * @param offsets offsets of each row, of length n + 1
+     * @param idxs indices of the neighbors
+     * @param sims similarities of the neighbors
+     */
+    public CachedNeighborhood(int[] offsets, int[] idxs, double[] sims) {
+        this.offsets = offsets;
+        this.idxs = idxs;
+        this.sims = sims;
+    }
+
+    /**
+     * Constructor that shares the neighborhoods of another cached
+     * neighborhood.
+     *
+     * @param neighborhood cached neighborhood
+     */
+    protected CachedNeighborhood(CachedNeighborhood neighborhood) {
+        this(neighborhood.offsets, neighborhood.idxs, neighborhood.sims);
+    }
+
+    /**
+     * Returns the number of users/items whose neighborhoods are cached.
+     *
+     * @return number of users/items
+     */
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /**
+     * Returns the total number of cached neighbors.
+     *
+     * @return number of neighbors
+     */
+    public int numNeighbors() {
+        return offsets[offsets.length - 1];
     }
 
     @Override
     public Stream<IdxDouble> getNeighbors(int idx) {
-        if (idx < 0) {
+        if (idx < 0 || idx >= offsets.length - 1) {
             return empty();
         }
-        IntArrayList idxl = idxla[idx];
-        DoubleArrayList siml = simla[idx];
-        if (idxl == null || siml == null) {
-            return empty();
+        return range(offsets[idx], offsets[idx + 1]).mapToObj(i -> new IdxDouble(idxs[i], sims[i]));
+    }
+
+    @Override
+    public void forEachNeighbor(int idx, IntDoubleConsumer consumer) {
+        if (idx < 0 || idx >= offsets.length - 1) {
+            return;
+        }
+        for (int i = offsets[idx]; i < offsets[idx + 1]; i++) {
+            consumer.accept(idxs[i], sims[i]);
         }
-        return range(0, idxl.size()).mapToObj(i -> new IdxDouble(idxl.getInt(i), siml.getDouble(i)));
+    }
+
+    /**
+     * Saves the neighborhoods in the binary format of
+     * {@link MappedNeighborhood}. Similarities are stored as floats.
+     *
+     * @param path path of the output file
+     * @throws IOException when IO error
+     */
+    public void save(String path) throws IOException {
+        MappedNeighborhood.write(this, size(), path);
+    }
+
+    /**
+     * Loads into memory the neighborhoods of a binary file written by
+     * {@link #save(String)} or {@link MappedNeighborhood.Writer}. Use
+     * {@link MappedNeighborhood#load(String)} for serving them from the file
+     * instead.
+     *
+     * @param path path of the binary file
+     * @return cached neighborhood
+     * @throws IOException when the file does not exist, is not valid or IO
+     * error
+     */
+    public static CachedNeighborhood load(String path) throws IOException {
+        MappedNeighborhood neighborhood = MappedNeighborhood.load(path);
+        if (neighborhood.numNeighbors() > Integer.MAX_VALUE) {
+            throw new IOException("too many neighbors: " + neighborhood.numNeighbors());
+        }
+
+        return new CachedNeighborhood(neighborhood.size(), neighborhood);
     }
 
 }
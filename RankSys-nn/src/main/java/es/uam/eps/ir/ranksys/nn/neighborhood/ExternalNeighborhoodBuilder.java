@@ -0,0 +1,375 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.nn.sim.SetSimilarity;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.function.Supplier;
+
+/**
+ * External-memory neighborhood builder. Computes the neighborhoods of every
+ * user/item with a bounded amount of memory by spilling the partial
+ * products of the sparse product of the preference data with its transpose
+ * to temporary files.
+ *
+ * For every column of the preference data, the (row, row, contribution)
+ * triples of all pairs of rows in the column are appended to the spill file
+ * of the partition of the first row. The rows are split in consecutive
+ * ranges so that no partition receives more triples than a given maximum.
+ * Then, each partition is loaded, sorted and aggregated, the similarity
+ * formula and the top-k or threshold selection are applied, and the result
+ * is written to a {@link MappedNeighborhood} file. Only the norms of the
+ * rows and one partition are kept in memory at any time.
+ *
+ * Every pair of rows sharing a column is spilled in both directions, (a, b)
+ * and (b, a), so that each partition holds complete rows and can be
+ * aggregated on its own: the spill files take twice the space of the
+ * distinct pairs, 16 bytes per triple.
+ *
+ * At most {@link #MAX_OPEN_SPILLS} spill files are open at any time, each
+ * with a 64 KB write buffer. When there are more partitions, the columns
+ * are read once per group of {@link #MAX_OPEN_SPILLS} consecutive
+ * partitions, each pass spilling only the triples of the rows of its group.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class ExternalNeighborhoodBuilder {
+
+    /**
+     * Default maximum number of triples in each partition, about 128 MB of
+     * memory when the partition is aggregated.
+     */
+    public static final int DEFAULT_PARTITION_SIZE = 1 << 23;
+
+    /**
+     * Maximum number of spill files open at the same time, which bounds the
+     * write buffers to 4 MB.
+     */
+    public static final int MAX_OPEN_SPILLS = 64;
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Computes the top-k neighborhoods of all users/items of a vector
+     * similarity and writes them to a binary neighborhood file. See
+     * {@link TopKNeighborhood}.
+     *
+     * @param sim vector similarity
+     * @param k maximum size of neighborhood
+     * @param path path of the output file
+     * @param tmpDir directory of the temporary spill files
+     * @param partitionSize maximum number of triples in each partition
+     * @return mapped neighborhood of the output file
+     * @throws IOException when IO error
+     */
+    public static MappedNeighborhood topK(VectorSimilarity sim, int k, String path, String tmpDir, int partitionSize) throws IOException {
+        return build(sim.getData(), true, vectorSimilarity(sim), () -> new TopKRow(k), path, tmpDir, partitionSize);
+    }
+
+    /**
+     * Computes the top-k neighborhoods of all users/items of a set
+     * similarity and writes them to a binary neighborhood file. See
+     * {@link TopKNeighborhood}.
+     *
+     * @param sim set similarity
+     * @param k maximum size of neighborhood
+     * @param path path of the output file
+     * @param tmpDir directory of the temporary spill files
+     * @param partitionSize maximum number of triples in each partition
+     * @return mapped neighborhood of the output file
+     * @throws IOException when IO error
+     */
+    public static MappedNeighborhood topK(SetSimilarity sim, int k, String path, String tmpDir, int partitionSize) throws IOException {
+        return build(sim.getData(), false, setSimilarity(sim), () -> new TopKRow(k), path, tmpDir, partitionSize);
+    }
+
+    /**
+     * Computes the threshold neighborhoods of all users/items of a vector
+     * similarity and writes them to a binary neighborhood file. See
+     * {@link ThresholdNeighborhood}.
+     *
+     * @param sim vector similarity
+     * @param threshold minimum value to be considered as neighbor
+     * @param path path of the output file
+     * @param tmpDir directory of the temporary spill files
+     * @param partitionSize maximum number of triples in each partition
+     * @return mapped neighborhood of the output file
+     * @throws IOException when IO error
+     */
+    public static MappedNeighborhood threshold(VectorSimilarity sim, double threshold, String path, String tmpDir, int partitionSize) throws IOException {
+        return build(sim.getData(), true, vectorSimilarity(sim), () -> new ThresholdRow(threshold), path, tmpDir, partitionSize);
+    }
+
+    /**
+     * Computes the threshold neighborhoods of all users/items of a set
+     * similarity and writes them to a binary neighborhood file. See
+     * {@link ThresholdNeighborhood}.
+     *
+     * @param sim set similarity
+     * @param threshold minimum value to be considered as neighbor
+     * @param path path of the output file
+     * @param tmpDir directory of the temporary spill files
+     * @param partitionSize maximum number of triples in each partition
+     * @return mapped neighborhood of the output file
+     * @throws IOException when IO error
+     */
+    public static MappedNeighborhood threshold(SetSimilarity sim, double threshold, String path, String tmpDir, int partitionSize) throws IOException {
+        return build(sim.getData(), false, setSimilarity(sim), () -> new ThresholdRow(threshold), path, tmpDir, partitionSize);
+    }
+
+    private static PairSimilarity vectorSimilarity(VectorSimilarity sim) {
+        FastPreferenceData<?, ?, ?> data = sim.getData();
+        double[] norm2s = new double[data.numUsers()];
+        data.getUidxWithPreferences().forEach(idx -> norm2s[idx] = sim.getNorm2(idx));
+
+        return (idx1, product, idx2) -> sim.productSimilarity(product, norm2s[idx1], norm2s[idx2]);
+    }
+
+    private static PairSimilarity setSimilarity(SetSimilarity sim) {
+        FastPreferenceData<?, ?, ?> data = sim.getData();
+        int[] sizes = new int[data.numUsers()];
+        data.getUidxWithPreferences().forEach(idx -> sizes[idx] = data.numItems(idx));
+
+        return (idx1, product, idx2) -> sim.intersectionSimilarity((int) product, sizes[idx1], sizes[idx2]);
+    }
+
+    private static MappedNeighborhood build(FastPreferenceData<?, ?, ?> data, boolean useValues, PairSimilarity sim, Supplier<Row> rows, String path, String tmpDir, int partitionSize) throws IOException {
+        if (partitionSize <= 0) {
+            throw new IllegalArgumentException("partition size must be positive: " + partitionSize);
+        }
+        int n = data.numUsers();
+
+        // ranges of rows whose triples fit in a partition
+        long[] numTriples = new long[n];
+        data.getUidxWithPreferences().forEach(idx -> {
+            IntIterator iidxs = data.getUidxIidxs(idx);
+            long count = 0;
+            while (iidxs.hasNext()) {
+                count += data.numUsers(iidxs.nextInt()) - 1;
+            }
+            numTriples[idx] = count;
+        });
+        int[] partitions = new int[n];
+        long[] sizes = new long[n + 1];
+        int numPartitions = 0;
+        for (int idx = 0; idx < n; idx++) {
+            if (idx > 0 && sizes[numPartitions] + numTriples[idx] > partitionSize) {
+                numPartitions++;
+            }
+            partitions[idx] = numPartitions;
+            sizes[numPartitions] += numTriples[idx];
+        }
+        numPartitions++;
+        for (int p = 0; p < numPartitions; p++) {
+            if (sizes[p] > Integer.MAX_VALUE - 8) {
+                throw new IllegalStateException("too many triples for a single row: " + sizes[p]);
+            }
+        }
+
+        Path[] spills = new Path[numPartitions];
+        try {
+            // spill of the triples to the partitions, one group of partitions per pass
+            for (int p0 = 0; p0 < numPartitions; p0 += MAX_OPEN_SPILLS) {
+                spill(data, useValues, partitions, p0, Math.min(numPartitions, p0 + MAX_OPEN_SPILLS), spills, tmpDir);
+            }
+
+            // sort-aggregation of each partition
+            try (MappedNeighborhood.Writer writer = new MappedNeighborhood.Writer(path, n)) {
+                Row row = rows.get();
+                for (int p = 0; p < numPartitions; p++) {
+                    int size = (int) sizes[p];
+                    long[] keys = new long[size];
+                    long[] values = new long[size];
+                    try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spills[p]), BUFFER_SIZE))) {
+                        for (int t = 0; t < size; t++) {
+                            keys[t] = ((long) in.readInt() << 32) | in.readInt();
+                            values[t] = Double.doubleToRawLongBits(in.readDouble());
+                        }
+                    }
+                    Files.delete(spills[p]);
+                    spills[p] = null;
+
+                    LongArrays.radixSort(keys, values);
+
+                    int t = 0;
+                    while (t < size) {
+                        int idx1 = (int) (keys[t] >>> 32);
+                        while (t < size && (int) (keys[t] >>> 32) == idx1) {
+                            long key = keys[t];
+                            double product = 0.0;
+                            while (t < size && keys[t] == key) {
+                                product += Double.longBitsToDouble(values[t]);
+                                t++;
+                            }
+                            int idx2 = (int) key;
+                            row.add(idx2, sim.similarity(idx1, product, idx2));
+                        }
+                        row.emit(idx1, writer);
+                    }
+                }
+            }
+        } finally {
+            for (Path spill : spills) {
+                if (spill != null) {
+                    Files.deleteIfExists(spill);
+                }
+            }
+        }
+
+        return MappedNeighborhood.load(path);
+    }
+
+    private static void spill(FastPreferenceData<?, ?, ?> data, boolean useValues, int[] partitions, int p0, int p1, Path[] spills, String tmpDir) throws IOException {
+        DataOutputStream[] outs = new DataOutputStream[p1 - p0];
+        try {
+            for (int p = p0; p < p1; p++) {
+                spills[p] = Files.createTempFile(Paths.get(tmpDir), "neighborhood-", ".spill");
+                outs[p - p0] = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spills[p]), BUFFER_SIZE));
+            }
+
+            int[] idxs = new int[0];
+            double[] vs = new double[0];
+            for (int iidx = 0; iidx < data.numItems(); iidx++) {
+                int m = data.numUsers(iidx);
+                if (m < 2) {
+                    continue;
+                }
+                if (idxs.length < m) {
+                    idxs = new int[m];
+                    vs = new double[m];
+                }
+                IntIterator vidxs = data.getIidxUidxs(iidx);
+                DoubleIterator vvs = useValues ? data.getIidxVs(iidx) : null;
+                for (int j = 0; j < m; j++) {
+                    idxs[j] = vidxs.nextInt();
+                    vs[j] = useValues ? vvs.nextDouble() : 1.0;
+                }
+
+                for (int j1 = 0; j1 < m; j1++) {
+                    int p = partitions[idxs[j1]];
+                    if (p < p0 || p >= p1) {
+                        continue;
+                    }
+                    DataOutputStream out = outs[p - p0];
+                    for (int j2 = 0; j2 < m; j2++) {
+                        if (j1 != j2) {
+                            out.writeInt(idxs[j1]);
+                            out.writeInt(idxs[j2]);
+                            out.writeDouble(vs[j1] * vs[j2]);
+                        }
+                    }
+                }
+            }
+        } finally {
+            for (DataOutputStream out : outs) {
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+
+    private interface PairSimilarity {
+
+        double similarity(int idx1, double product, int idx2);
+    }
+
+    private static abstract class Row {
+
+        public abstract void add(int idx, double sim);
+
+        public abstract void emit(int idx, MappedNeighborhood.Writer writer) throws IOException;
+    }
+
+    private static class TopKRow extends Row {
+
+        private final int k;
+        private IntDoubleTopN topN;
+
+        public TopKRow(int k) {
+            this.k = k;
+            this.topN = new IntDoubleTopN(k);
+        }
+
+        @Override
+        public void add(int idx, double sim) {
+            topN.add(idx, sim);
+        }
+
+        @Override
+        public void emit(int idx, MappedNeighborhood.Writer writer) throws IOException {
+            topN.sort();
+            Iterator<Int2DoubleMap.Entry> it = topN.reverseIterator();
+            while (it.hasNext()) {
+                Int2DoubleMap.Entry e = it.next();
+                writer.add(idx, e.getIntKey(), e.getDoubleValue());
+            }
+
+            if (topN.size() > 0) {
+                topN = new IntDoubleTopN(k);
+            }
+        }
+    }
+
+    private static class ThresholdRow extends Row {
+
+        private final double threshold;
+        private final IntArrayList idxl;
+        private final DoubleArrayList siml;
+
+        public ThresholdRow(double threshold) {
+            this.threshold = threshold;
+            this.idxl = new IntArrayList();
+            this.siml = new DoubleArrayList();
+        }
+
+        @Override
+        public void add(int idx, double sim) {
+            if (sim > threshold) {
+                idxl.add(idx);
+                siml.add(sim);
+            }
+        }
+
+        @Override
+        public void emit(int idx, MappedNeighborhood.Writer writer) throws IOException {
+            for (int i = 0; i < idxl.size(); i++) {
+                writer.add(idx, idxl.getInt(i), siml.getDouble(i));
+            }
+            idxl.clear();
+            siml.clear();
+        }
+    }
+}
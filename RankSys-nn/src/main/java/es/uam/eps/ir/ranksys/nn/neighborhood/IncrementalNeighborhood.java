@@ -0,0 +1,215 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.preference.PreferenceTriples;
+import es.uam.eps.ir.ranksys.fast.utils.DenseAccumulator;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.Iterator;
+import static java.util.stream.IntStream.range;
+import java.util.stream.Stream;
+import static java.util.stream.Stream.empty;
+
+/**
+ * Top-K neighborhood of a vector similarity that is maintained incrementally
+ * as new preferences arrive, instead of being recomputed from scratch.
+ *
+ * The neighborhood keeps the inner products of every pair of co-occurring
+ * users/items and the squares of their norms. When a batch of new
+ * preferences is added (see {@link #update(PreferenceTriples)}), only the
+ * inner products and norms involving the new preferences are updated, and
+ * only the top-K lists whose similarities may have changed are recomputed:
+ * the ones of the users/items with updated inner products or norms, and the
+ * ones of the users/items co-occurring with those whose norm changed.
+ *
+ * Preferences are assumed to be new, not modifications of existing ones,
+ * and their indexes to be within the original preference data. Readers can
+ * call {@link #getNeighbors(int)} concurrently with updates, getting either
+ * the old or the new neighborhood of each user/item.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class IncrementalNeighborhood implements Neighborhood {
+
+    private final VectorSimilarity sim;
+    private final FastPreferenceData<?, ?, ?> data;
+    private final int k;
+    private final Int2DoubleOpenHashMap[] products;
+    private final double[] norm2s;
+    private final Int2ObjectMap<IntArrayList> newIdxs;
+    private final Int2ObjectMap<DoubleArrayList> newVs;
+    private final Row[] rows;
+
+    /**
+     * Constructor. Computes the initial neighborhoods from the preference
+     * data of the similarity.
+     *
+     * @param sim vector similarity
+     * @param k maximum size of neighborhood
+     */
+    public IncrementalNeighborhood(VectorSimilarity sim, int k) {
+        this.sim = sim;
+        this.data = sim.getData();
+        this.k = k;
+
+        int n = data.numUsers();
+        this.norm2s = new double[n];
+        this.products = new Int2DoubleOpenHashMap[n];
+        this.newIdxs = new Int2ObjectOpenHashMap<>();
+        this.newVs = new Int2ObjectOpenHashMap<>();
+        this.rows = new Row[n];
+
+        ThreadLocal<DenseAccumulator> accumulators = DenseAccumulator.threadLocal(n);
+        range(0, n).parallel().forEach(idx1 -> {
+            norm2s[idx1] = sim.getNorm2(idx1);
+
+            DenseAccumulator accumulator = accumulators.get();
+            data.forEachUidxPref(idx1, (iidx, iv) -> {
+                data.forEachIidxPref(iidx, (idx2, v2) -> {
+                    if (idx2 != idx1) {
+                        accumulator.add(idx2, iv * v2);
+                    }
+                });
+            });
+            Int2DoubleOpenHashMap map = new Int2DoubleOpenHashMap(accumulator.size());
+            accumulator.forEach(map::put);
+            accumulator.reset();
+            products[idx1] = map;
+        });
+
+        range(0, n).parallel().forEach(this::repair);
+    }
+
+    /**
+     * Adds a batch of new preferences and repairs the affected neighborhoods.
+     * User indexes of the triples are the users/items whose neighborhoods are
+     * kept, that is, the users of the preference data of the similarity.
+     *
+     * @param preferences new preferences
+     */
+    public synchronized void update(PreferenceTriples<?> preferences) {
+        IntSet changed = new IntOpenHashSet();
+        IntSet changedNorms = new IntOpenHashSet();
+
+        for (int j = 0; j < preferences.size(); j++) {
+            int idx1 = preferences.getUidxs().getInt(j);
+            int iidx = preferences.getIidxs().getInt(j);
+            double iv = preferences.getVs().getDouble(j);
+
+            norm2s[idx1] += iv * iv;
+            changedNorms.add(idx1);
+            forEachColumnPref(iidx, (idx2, v2) -> {
+                if (idx2 != idx1) {
+                    products[idx1].addTo(idx2, iv * v2);
+                    products[idx2].addTo(idx1, iv * v2);
+                    changed.add(idx2);
+                }
+            });
+
+            if (!newIdxs.containsKey(iidx)) {
+                newIdxs.put(iidx, new IntArrayList());
+                newVs.put(iidx, new DoubleArrayList());
+            }
+            newIdxs.get(iidx).add(idx1);
+            newVs.get(iidx).add(iv);
+        }
+
+        changed.addAll(changedNorms);
+        IntIterator it = changedNorms.iterator();
+        while (it.hasNext()) {
+            changed.addAll(products[it.nextInt()].keySet());
+        }
+
+        changed.parallelStream().forEach(this::repair);
+    }
+
+    private void forEachColumnPref(int iidx, IntDoubleConsumer consumer) {
+        data.forEachIidxPref(iidx, consumer);
+        IntArrayList idxs = newIdxs.get(iidx);
+        if (idxs != null) {
+            DoubleArrayList vs = newVs.get(iidx);
+            for (int i = 0; i < idxs.size(); i++) {
+                consumer.accept(idxs.getInt(i), vs.getDouble(i));
+            }
+        }
+    }
+
+    private void repair(int idx1) {
+        double n2a = norm2s[idx1];
+        IntDoubleTopN topN = new IntDoubleTopN(k);
+        for (Int2DoubleMap.Entry e : products[idx1].int2DoubleEntrySet()) {
+            int idx2 = e.getIntKey();
+            topN.add(idx2, sim.productSimilarity(e.getDoubleValue(), n2a, norm2s[idx2]));
+        }
+        topN.sort();
+
+        int[] idxs = new int[topN.size()];
+        double[] sims = new double[topN.size()];
+        Iterator<Int2DoubleMap.Entry> it = topN.reverseIterator();
+        for (int i = 0; it.hasNext(); i++) {
+            Int2DoubleMap.Entry e = it.next();
+            idxs[i] = e.getIntKey();
+            sims[i] = e.getDoubleValue();
+        }
+        rows[idx1] = new Row(idxs, sims);
+    }
+
+    @Override
+    public Stream<IdxDouble> getNeighbors(int idx) {
+        if (idx < 0) {
+            return empty();
+        }
+        Row row = rows[idx];
+        return range(0, row.idxs.length).mapToObj(i -> new IdxDouble(row.idxs[i], row.sims[i]));
+    }
+
+    @Override
+    public void forEachNeighbor(int idx, IntDoubleConsumer consumer) {
+        if (idx < 0) {
+            return;
+        }
+        Row row = rows[idx];
+        for (int i = 0; i < row.idxs.length; i++) {
+            consumer.accept(row.idxs[i], row.sims[i]);
+        }
+    }
+
+    private static class Row {
+
+        private final int[] idxs;
+        private final double[] sims;
+
+        public Row(int[] idxs, double[] sims) {
+            this.idxs = idxs;
+            this.sims = sims;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.nn.sim.SetSimilarity;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.IntToDoubleFunction;
+import static java.util.stream.IntStream.range;
+import java.util.stream.Stream;
+import static java.util.stream.Stream.empty;
+
+/**
+ * Approximate top-K neighborhood for set similarities based on MinHash
+ * locality-sensitive hashing. The profile of each user/item is summarised by
+ * a MinHash signature of numBands * numRows hash values, and every band of
+ * numRows values is hashed into a bucket. The candidate neighbors of a
+ * user/item are those sharing at least one bucket with it, and only those are
+ * verified with the exact set similarity.
+ *
+ * Two profiles with Jaccard similarity s become candidates with probability
+ * 1 - (1 - s^numRows)^numBands: more bands increase recall (and building
+ * time and memory), more rows per band reduce the number of candidates.
+ *
+ * A. Broder. On the resemblance and containment of documents. SEQUENCES 1997.
+ *
+ * A. Rajaraman and J. D. Ullman. Mining of Massive Datasets, chapter 3.
+ * Cambridge University Press, 2011.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class LSHNeighborhood implements Neighborhood {
+
+    private final SetSimilarity sim;
+    private final int k;
+    private final int numBands;
+    private final int[][] bandKeys;
+    private final int[][] buckets;
+    private final int maxBucketSize;
+
+    /**
+     * Constructor.
+     *
+     * @param sim set similarity
+     * @param k maximum size of neighborhood
+     * @param numBands number of bands of the signatures
+     * @param numRows number of hash values in each band
+     * @param seed seed of the hash functions
+     */
+    public LSHNeighborhood(SetSimilarity sim, int k, int numBands, int numRows, long seed) {
+        this(sim, k, numBands, numRows, seed, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param sim set similarity
+     * @param k maximum size of neighborhood
+     * @param numBands number of bands of the signatures
+     * @param numRows number of hash values in each band
+     * @param seed seed of the hash functions
+     * @param maxBucketSize maximum number of candidates taken from a single
+     * bucket, to bound the cost of very crowded buckets
+     */
+    public LSHNeighborhood(SetSimilarity sim, int k, int numBands, int numRows, long seed, int maxBucketSize) {
+        this.sim = sim;
+        this.k = k;
+        this.numBands = numBands;
+        this.maxBucketSize = maxBucketSize;
+
+        FastPreferenceData<?, ?, ?> data = sim.getData();
+        int n = data.numUsers();
+
+        Random rnd = new Random(seed);
+        int numHashes = numBands * numRows;
+        int[] a = new int[numHashes];
+        int[] b = new int[numHashes];
+        for (int h = 0; h < numHashes; h++) {
+            a[h] = rnd.nextInt() | 1;
+            b[h] = rnd.nextInt();
+        }
+
+        this.bandKeys = new int[numBands][n];
+        range(0, n).parallel().forEach(idx -> {
+            if (data.numItems(idx) == 0) {
+                return;
+            }
+            int[] signature = new int[numHashes];
+            Arrays.fill(signature, Integer.MAX_VALUE);
+            IntIterator iidxs = data.getUidxIidxs(idx);
+            while (iidxs.hasNext()) {
+                int iidx = iidxs.nextInt();
+                for (int h = 0; h < numHashes; h++) {
+                    int v = mix(a[h] * iidx + b[h]);
+                    if (v < signature[h]) {
+                        signature[h] = v;
+                    }
+                }
+            }
+            for (int band = 0; band < numBands; band++) {
+                int key = band;
+                for (int r = band * numRows; r < (band + 1) * numRows; r++) {
+                    key = 31 * key + signature[r];
+                }
+                bandKeys[band][idx] = mix(key);
+            }
+        });
+
+        int[] withPrefs = data.getUidxWithPreferences().toArray();
+        this.buckets = new int[numBands][];
+        for (int band = 0; band < numBands; band++) {
+            int[] keys = bandKeys[band];
+            long[] pairs = new long[withPrefs.length];
+            for (int i = 0; i < withPrefs.length; i++) {
+                int idx = withPrefs[i];
+                pairs[i] = ((long) keys[idx] << 32) | idx;
+            }
+            Arrays.parallelSort(pairs);
+            int[] bucket = new int[pairs.length];
+            for (int i = 0; i < pairs.length; i++) {
+                bucket[i] = (int) pairs[i];
+            }
+            buckets[band] = bucket;
+        }
+    }
+
+    @Override
+    public Stream<IdxDouble> getNeighbors(int idx) {
+        if (idx < 0 || sim.getData().numItems(idx) == 0) {
+            return empty();
+        }
+
+        IntSet candidates = new IntOpenHashSet();
+        for (int band = 0; band < numBands; band++) {
+            int[] keys = bandKeys[band];
+            int[] bucket = buckets[band];
+            int key = keys[idx];
+
+            int from = firstOf(keys, bucket, key);
+            int to = from + Math.min(bucket.length - from, maxBucketSize);
+            for (int i = from; i < to && keys[bucket[i]] == key; i++) {
+                candidates.add(bucket[i]);
+            }
+        }
+        candidates.remove(idx);
+
+        IntToDoubleFunction sims = sim.similarity(idx);
+        IntDoubleTopN topN = new IntDoubleTopN(k);
+        IntIterator it = candidates.iterator();
+        while (it.hasNext()) {
+            int idx2 = it.nextInt();
+            topN.add(idx2, sims.applyAsDouble(idx2));
+        }
+
+        return topN.stream().map(e -> new IdxDouble(e));
+    }
+
+    private static int firstOf(int[] keys, int[] bucket, int key) {
+        int low = 0;
+        int high = bucket.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[bucket[mid]] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
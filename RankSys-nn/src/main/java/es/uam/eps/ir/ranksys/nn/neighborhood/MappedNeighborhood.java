@@ -0,0 +1,250 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
+import es.uam.eps.ir.ranksys.fast.utils.LittleEndianWriter;
+import es.uam.eps.ir.ranksys.fast.utils.MappedBuffer;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.stream.LongStream;
+import java.util.stream.Stream;
+import static java.util.stream.Stream.empty;
+
+/**
+ * Neighborhood stored in a binary file that is memory-mapped, so that
+ * neighborhoods computed once (see {@link CachedNeighborhood} or
+ * {@link AllPairsNeighborhoodBuilder}) can be opened by other processes
+ * without recomputing or reading them into the heap.
+ *
+ * The file is written in little-endian order by a {@link Writer} and
+ * contains:
+ * <ul>
+ * <li>header: magic number (int), format version (int), number of
+ * users/items (int) and a padding int;</li>
+ * <li>neighbors: for each user/item in order, its neighbors as pairs of
+ * index (int) and similarity (float);</li>
+ * <li>offsets (long[n + 1]) of the first neighbor of each user/item, the last
+ * one being the total number of neighbors.</li>
+ * </ul>
+ * Neighbor indices and similarities are interleaved so that a neighborhood is
+ * read from contiguous memory, and the offsets are written last so that the
+ * file can be written in a single pass.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class MappedNeighborhood implements Neighborhood {
+
+    private static final int MAGIC = 0x52534e42;
+    private static final int VERSION = 1;
+    private static final long HEADER_SIZE = 16;
+
+    private final MappedBuffer buffer;
+    private final int n;
+    private final long offsets;
+
+    /**
+     * Constructor.
+     *
+     * @param buffer mapped binary file
+     * @throws IOException when the file is not a valid binary neighborhood
+     * file
+     */
+    protected MappedNeighborhood(MappedBuffer buffer) throws IOException {
+        this.buffer = buffer;
+
+        if (buffer.size() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a binary neighborhood file");
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("unsupported binary neighborhood file version " + buffer.getInt(4));
+        }
+        this.n = buffer.getInt(8);
+        this.offsets = buffer.size() - 8L * (n + 1);
+        if (offsets < HEADER_SIZE || HEADER_SIZE + 8 * buffer.getLong(offsets + 8L * n) != offsets) {
+            throw new IOException("truncated binary neighborhood file");
+        }
+    }
+
+    /**
+     * Returns the number of users/items whose neighborhoods are stored.
+     *
+     * @return number of users/items
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Returns the total number of stored neighbors.
+     *
+     * @return number of neighbors
+     */
+    public long numNeighbors() {
+        return start(n);
+    }
+
+    private long start(int idx) {
+        return buffer.getLong(offsets + 8L * idx);
+    }
+
+    @Override
+    public Stream<IdxDouble> getNeighbors(int idx) {
+        if (idx < 0 || idx >= n) {
+            return empty();
+        }
+        return LongStream.range(start(idx), start(idx + 1))
+                .mapToObj(j -> {
+                    long pos = HEADER_SIZE + 8 * j;
+                    return new IdxDouble(buffer.getInt(pos), buffer.getFloat(pos + 4));
+                });
+    }
+
+    @Override
+    public void forEachNeighbor(int idx, IntDoubleConsumer consumer) {
+        if (idx < 0 || idx >= n) {
+            return;
+        }
+        long to = HEADER_SIZE + 8 * start(idx + 1);
+        for (long pos = HEADER_SIZE + 8 * start(idx); pos < to; pos += 8) {
+            consumer.accept(buffer.getInt(pos), buffer.getFloat(pos + 4));
+        }
+    }
+
+    /**
+     * Opens a binary neighborhood file.
+     *
+     * @param path path of the binary file
+     * @return a mapped neighborhood
+     * @throws IOException when the file does not exist, is not valid or IO
+     * error
+     */
+    public static MappedNeighborhood load(String path) throws IOException {
+        return new MappedNeighborhood(MappedBuffer.map(Paths.get(path)));
+    }
+
+    /**
+     * Writes the neighborhoods of all users/items in the binary format.
+     *
+     * @param neighborhood neighborhood to be written
+     * @param n number of users/items
+     * @param path path of the output file
+     * @throws IOException when IO error
+     */
+    public static void write(Neighborhood neighborhood, int n, String path) throws IOException {
+        try (Writer writer = new Writer(path, n)) {
+            for (int idx = 0; idx < n; idx++) {
+                writer.add(idx, neighborhood.getNeighbors(idx));
+            }
+        }
+    }
+
+    /**
+     * Streaming writer of binary neighborhood files. Neighbors have to be
+     * added in non-decreasing order of user/item, and the file is complete
+     * once the writer is closed.
+     */
+    public static class Writer implements Closeable {
+
+        private final LittleEndianWriter out;
+        private final long[] offsets;
+        private int idx;
+        private long numNeighbors;
+
+        /**
+         * Constructor.
+         *
+         * @param path path of the output file
+         * @param n number of users/items
+         * @throws IOException when IO error
+         */
+        public Writer(String path, int n) throws IOException {
+            this.out = new LittleEndianWriter(Paths.get(path));
+            this.offsets = new long[n + 1];
+            this.idx = 0;
+            this.numNeighbors = 0;
+
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(n);
+            out.writeInt(0);
+        }
+
+        /**
+         * Adds a neighbor of a user/item.
+         *
+         * @param idx index of the user/item
+         * @param neighbor index of the neighbor
+         * @param sim similarity of the neighbor
+         * @throws IOException when IO error
+         */
+        public void add(int idx, int neighbor, double sim) throws IOException {
+            moveTo(idx);
+            out.writeInt(neighbor);
+            out.writeFloat((float) sim);
+            numNeighbors++;
+        }
+
+        /**
+         * Adds the neighbors of a user/item.
+         *
+         * @param idx index of the user/item
+         * @param neighbors stream of neighbors
+         * @throws IOException when IO error
+         */
+        public void add(int idx, Stream<IdxDouble> neighbors) throws IOException {
+            moveTo(idx);
+            Iterator<IdxDouble> it = neighbors.iterator();
+            while (it.hasNext()) {
+                IdxDouble is = it.next();
+                out.writeInt(is.idx);
+                out.writeFloat((float) is.v);
+                numNeighbors++;
+            }
+        }
+
+        private void moveTo(int idx) {
+            if (idx < 0 || idx >= offsets.length - 1) {
+                throw new IndexOutOfBoundsException("index out of range: " + idx);
+            }
+            if (idx < this.idx) {
+                throw new IllegalArgumentException("neighbors not added in order: " + idx);
+            }
+            while (this.idx < idx) {
+                offsets[++this.idx] = numNeighbors;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                while (idx < offsets.length - 1) {
+                    offsets[++idx] = numNeighbors;
+                }
+                for (long offset : offsets) {
+                    out.writeLong(offset);
+                }
+            } finally {
+                out.close();
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package es.uam.eps.ir.ranksys.nn.neighborhood;
 
 import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
 import java.util.stream.Stream;
 
 /**
@@ -35,4 +36,17 @@ public interface Neighborhood {
      * @return stream of user/item-similarity pairs.
      */
     public Stream<IdxDouble> getNeighbors(int idx);
+
+    /**
+     * Performs an operation over the neighbors of a user/item without
+     * creating an object per neighbor. By default it consumes
+     * {@link #getNeighbors(int)}, implementations are encouraged to override
+     * it.
+     *
+     * @param idx user/index whose neighborhood is visited
+     * @param consumer operation over user/item-similarity pairs
+     */
+    public default void forEachNeighbor(int idx, IntDoubleConsumer consumer) {
+        getNeighbors(idx).forEach(is -> consumer.accept(is.idx, is.v));
+    }
 }
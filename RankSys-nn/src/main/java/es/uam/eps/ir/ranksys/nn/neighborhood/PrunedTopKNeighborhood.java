@@ -0,0 +1,314 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.DenseAccumulator;
+import es.uam.eps.ir.ranksys.fast.utils.SortedIntersection;
+import es.uam.eps.ir.ranksys.fast.utils.topn.IntDoubleTopN;
+import es.uam.eps.ir.ranksys.nn.sim.VectorCosineSimilarity;
+import es.uam.eps.ir.ranksys.nn.sim.VectorJaccardSimilarity;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+import java.util.concurrent.atomic.LongAdder;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.sqrt;
+import static java.util.stream.IntStream.range;
+import java.util.stream.Stream;
+import static java.util.stream.Stream.empty;
+
+/**
+ * Top-K neighborhood for vector cosine and Jaccard similarities that prunes
+ * candidates using upper bounds of the similarity, in the spirit of
+ * prefix filtering.
+ *
+ * The profile of the user/item is processed from its least to its most
+ * popular coordinate. After each coordinate, the norm of the remaining part
+ * of the profile bounds (by Cauchy-Schwarz) the inner product that any
+ * user/item not yet seen could reach, and therefore its similarity: once that
+ * bound is below the current k-th best similarity, no new candidates are
+ * generated and the most popular coordinates are not scanned. Then, the
+ * candidates are visited in decreasing order of their own upper bound, and
+ * their inner products are only completed while the bound can beat the
+ * current k-th best similarity.
+ *
+ * The result is the same as the one of {@link TopKNeighborhood} (up to
+ * ties), provided preference values are non-negative.
+ *
+ * R. J. Bayardo, Y. Ma, and R. Srikant. Scaling up all pairs similarity
+ * search. WWW 2007.
+ *
+ * D. C. Anastasiu and G. Karypis. L2AP: Fast cosine similarity search with
+ * prefix L-2 norm bounds. ICDE 2014.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class PrunedTopKNeighborhood implements Neighborhood {
+
+    private static final double SLACK = 1e-9;
+
+    private final VectorSimilarity sim;
+    private final FastPreferenceData<?, ?, ?> data;
+    private final int k;
+    private final double[] norms;
+    private final double minNorm;
+    private final double maxNorm;
+    private final ThreadLocal<DenseAccumulator> accumulators;
+    private final LongAdder numCandidates;
+    private final LongAdder numVerified;
+
+    /**
+     * Constructor.
+     *
+     * @param sim vector cosine or Jaccard similarity
+     * @param k maximum size of neighborhood
+     * @throws IllegalArgumentException when the similarity is not supported
+     * or preference values are negative
+     */
+    public PrunedTopKNeighborhood(VectorSimilarity sim, int k) {
+        if (!(sim instanceof VectorCosineSimilarity) && !(sim instanceof VectorJaccardSimilarity)) {
+            throw new IllegalArgumentException("unsupported similarity " + sim.getClass().getName());
+        }
+        this.sim = sim;
+        this.data = sim.getData();
+        this.k = k;
+
+        int n = data.numUsers();
+        this.norms = new double[n];
+        range(0, n).parallel().forEach(idx -> norms[idx] = sqrt(sim.getNorm2(idx)));
+        this.minNorm = data.getUidxWithPreferences().mapToDouble(idx -> norms[idx]).min().orElse(0.0);
+        this.maxNorm = data.getUidxWithPreferences().mapToDouble(idx -> norms[idx]).max().orElse(0.0);
+
+        boolean negative = data.getUidxWithPreferences().parallel().anyMatch(idx -> {
+            DoubleIterator vs = data.getUidxVs(idx);
+            while (vs.hasNext()) {
+                if (vs.nextDouble() < 0) {
+                    return true;
+                }
+            }
+            return false;
+        });
+        if (negative) {
+            throw new IllegalArgumentException("negative preference values are not supported");
+        }
+
+        this.accumulators = DenseAccumulator.threadLocal(n);
+        this.numCandidates = new LongAdder();
+        this.numVerified = new LongAdder();
+    }
+
+    /**
+     * Returns the number of users/items that have been generated as
+     * candidates so far, summed over all the calls to
+     * {@link #getNeighbors(int)}.
+     *
+     * @return number of candidates
+     */
+    public long getNumCandidates() {
+        return numCandidates.sum();
+    }
+
+    /**
+     * Returns the number of users/items whose similarity has been fully
+     * calculated so far, summed over all the calls to
+     * {@link #getNeighbors(int)}.
+     *
+     * @return number of verified candidates
+     */
+    public long getNumVerified() {
+        return numVerified.sum();
+    }
+
+    @Override
+    public Stream<IdxDouble> getNeighbors(int idx1) {
+        int na = idx1 < 0 ? 0 : data.numItems(idx1);
+        if (na == 0 || k <= 0) {
+            return empty();
+        }
+        double n2a = norms[idx1] * norms[idx1];
+
+        // coordinates of the profile, from the least to the most popular
+        int[] iidxs = new int[na];
+        double[] ivs = new double[na];
+        long[] order = new long[na];
+        IntIterator it = data.getUidxIidxs(idx1);
+        DoubleIterator vit = data.getUidxVs(idx1);
+        for (int i = 0; i < na; i++) {
+            iidxs[i] = it.nextInt();
+            ivs[i] = vit.nextDouble();
+            order[i] = ((long) data.numUsers(iidxs[i]) << 32) | i;
+        }
+        LongArrays.quickSort(order);
+        double[] rests = new double[na + 1];
+        for (int t = na - 1; t >= 0; t--) {
+            double iv = ivs[(int) order[t]];
+            rests[t] = rests[t + 1] + iv * iv;
+        }
+        for (int t = 0; t <= na; t++) {
+            rests[t] = sqrt(rests[t]);
+        }
+
+        // candidate generation on the least popular coordinates
+        DenseAccumulator products = accumulators.get();
+        products.reset();
+        double threshold = Double.NEGATIVE_INFINITY;
+        long scanned = 0;
+        long lastScanned = 0;
+        int t = 0;
+        while (t < na) {
+            if (products.size() >= k && scanned - lastScanned >= products.size()) {
+                threshold = max(threshold, kthLowerBound(products, idx1, n2a));
+                lastScanned = scanned;
+            }
+            if (unseenBound(rests[t], n2a) < threshold) {
+                break;
+            }
+            int i = (int) order[t];
+            double iv = ivs[i];
+            IntIterator vidxs = data.getIidxUidxs(iidxs[i]);
+            DoubleIterator vvs = data.getIidxVs(iidxs[i]);
+            while (vidxs.hasNext()) {
+                int idx2 = vidxs.nextInt();
+                double vv = vvs.nextDouble();
+                if (idx2 != idx1) {
+                    products.add(idx2, iv * vv);
+                }
+                scanned++;
+            }
+            t++;
+        }
+        double rest = rests[t];
+        numCandidates.add(products.size());
+
+        // remaining coordinates, needed to complete the inner products
+        int nr = na - t;
+        int[] rIidxs = new int[nr];
+        double[] rIvs = new double[nr];
+        for (int j = 0; j < nr; j++) {
+            int i = (int) order[t + j];
+            rIidxs[j] = iidxs[i];
+            rIvs[j] = ivs[i];
+        }
+        Int2DoubleOpenHashMap rMap = null;
+        if (nr > 0) {
+            if (data.hasSortedRows()) {
+                long[] pairs = new long[nr];
+                for (int j = 0; j < nr; j++) {
+                    pairs[j] = ((long) rIidxs[j] << 32) | j;
+                }
+                LongArrays.quickSort(pairs);
+                int[] sIidxs = new int[nr];
+                double[] sIvs = new double[nr];
+                for (int j = 0; j < nr; j++) {
+                    sIidxs[j] = (int) (pairs[j] >>> 32);
+                    sIvs[j] = rIvs[(int) pairs[j]];
+                }
+                rIidxs = sIidxs;
+                rIvs = sIvs;
+            } else {
+                rMap = new Int2DoubleOpenHashMap(nr);
+                for (int j = 0; j < nr; j++) {
+                    rMap.put(rIidxs[j], rIvs[j]);
+                }
+            }
+        }
+
+        // verification of candidates in decreasing order of upper bound
+        int nc = products.size();
+        int[] candidates = new int[nc];
+        double[] partials = new double[nc];
+        long[] bounds = new long[nc];
+        for (int c = 0; c < nc; c++) {
+            int idx2 = products.getTouched(c);
+            candidates[c] = idx2;
+            partials[c] = products.get(idx2);
+            double ub = candidateBound(partials[c], rest, idx2, n2a);
+            // non-negative doubles keep their order as raw bits
+            bounds[c] = (Double.doubleToLongBits(max(ub, 0.0)) & ~0xFFFFFFFFL) | c;
+        }
+        products.reset();
+        LongArrays.quickSort(bounds);
+
+        IntDoubleTopN topN = new IntDoubleTopN(k);
+        for (int j = nc - 1; j >= 0; j--) {
+            int c = (int) (bounds[j] & 0xFFFFFFFFL);
+            int idx2 = candidates[c];
+            if (topN.size() == k) {
+                threshold = max(threshold, topN.peek().getDoubleValue());
+            }
+            if (candidateBound(partials[c], rest, idx2, n2a) < threshold) {
+                // bounds are sorted only approximately (see above)
+                continue;
+            }
+            double product = partials[c];
+            if (nr > 0) {
+                product += remainingProduct(rIidxs, rIvs, rMap, idx2);
+            }
+            numVerified.increment();
+            topN.add(idx2, sim.productSimilarity(product, n2a, norms[idx2] * norms[idx2]));
+        }
+
+        return topN.stream().map(e -> new IdxDouble(e));
+    }
+
+    private double remainingProduct(int[] rIidxs, double[] rIvs, Int2DoubleOpenHashMap rMap, int idx2) {
+        if (rMap == null) {
+            return SortedIntersection.product(rIidxs, rIvs, rIidxs.length, data.getUidxIidxs(idx2), data.getUidxVs(idx2), data.numItems(idx2));
+        }
+        double product = 0.0;
+        IntIterator it = data.getUidxIidxs(idx2);
+        DoubleIterator vit = data.getUidxVs(idx2);
+        while (it.hasNext()) {
+            int iidx = it.nextInt();
+            double v = vit.nextDouble();
+            product += v * rMap.get(iidx);
+        }
+        return product;
+    }
+
+    private double kthLowerBound(DenseAccumulator products, int idx1, double n2a) {
+        IntDoubleTopN topN = new IntDoubleTopN(k);
+        products.forEach((idx2, product) -> topN.add(idx2, sim.productSimilarity(product, n2a, norms[idx2] * norms[idx2])));
+        return topN.peek().getDoubleValue();
+    }
+
+    private double candidateBound(double partial, double rest, int idx2, double n2a) {
+        double norm = norms[idx2];
+        double product = min(partial + rest * norm, sqrt(n2a) * norm);
+        return sim.productSimilarity(product, n2a, norm * norm) * (1 + SLACK);
+    }
+
+    private double unseenBound(double rest, double n2a) {
+        double normA = sqrt(n2a);
+        double x = min(max(normA, minNorm), maxNorm);
+        double ub = max(bound(rest, normA, n2a, minNorm), bound(rest, normA, n2a, maxNorm));
+        return max(ub, bound(rest, normA, n2a, x)) * (1 + SLACK);
+    }
+
+    private double bound(double rest, double normA, double n2a, double norm) {
+        if (norm <= 0) {
+            return 0.0;
+        }
+        return sim.productSimilarity(min(rest, normA) * norm, n2a, norm * norm);
+    }
+}
@@ -0,0 +1,130 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.neighborhood;
+
+import it.unimi.dsi.fastutil.Arrays;
+import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
+import it.unimi.dsi.fastutil.ints.AbstractIntComparator;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntPredicate;
+import static java.util.stream.IntStream.range;
+
+/**
+ * Transposed neighborhood: user/item a is a neighbor of b with similarity s
+ * if b is a neighbor of a with similarity s in the original neighborhood.
+ *
+ * The transposition is calculated in parallel in two passes: the first one
+ * calculates the original neighborhoods and counts the number of times each
+ * user/item appears as neighbor, and the second one places the neighbors in
+ * the compressed sparse rows of a {@link CachedNeighborhood}. The neighbors
+ * of each user/item are sorted by index.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ */
+public class TransposedNeighborhood extends CachedNeighborhood {
+
+    /**
+     * Constructor.
+     *
+     * @param n number of users/items
+     * @param neighborhood original neighborhood to be transposed
+     */
+    public TransposedNeighborhood(int n, Neighborhood neighborhood) {
+        this(n, neighborhood, idx -> true);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param n number of users/items
+     * @param neighborhood original neighborhood to be transposed
+     * @param filter filter to determine the users/items that require a
+     * transposed neighborhood, the rest have empty neighborhoods
+     */
+    public TransposedNeighborhood(int n, Neighborhood neighborhood, IntPredicate filter) {
+        super(transpose(n, neighborhood, filter));
+    }
+
+    /**
+     * Transposes a neighborhood.
+     *
+     * @param n number of users/items
+     * @param neighborhood original neighborhood to be transposed
+     * @param filter filter to determine the users/items that require a
+     * transposed neighborhood, the rest have empty neighborhoods
+     * @return transposed neighborhood
+     */
+    public static CachedNeighborhood transpose(int n, Neighborhood neighborhood, IntPredicate filter) {
+        int[][] fIdxs = new int[n][];
+        double[][] fSims = new double[n][];
+        AtomicIntegerArray counts = new AtomicIntegerArray(n);
+
+        range(0, n).parallel().forEach(idx -> {
+            IntArrayList idxl = new IntArrayList();
+            DoubleArrayList siml = new DoubleArrayList();
+            neighborhood.forEachNeighbor(idx, (jdx, sim) -> {
+                if (filter.test(jdx)) {
+                    idxl.add(jdx);
+                    siml.add(sim);
+                    counts.incrementAndGet(jdx);
+                }
+            });
+            fIdxs[idx] = idxl.toIntArray();
+            fSims[idx] = siml.toDoubleArray();
+        });
+
+        int[] offsets = new int[n + 1];
+        for (int jdx = 0; jdx < n; jdx++) {
+            offsets[jdx + 1] = offsets[jdx] + counts.get(jdx);
+        }
+        AtomicIntegerArray positions = new AtomicIntegerArray(offsets);
+
+        int[] idxs = new int[offsets[n]];
+        double[] sims = new double[offsets[n]];
+        range(0, n).parallel().forEach(idx -> {
+            int[] jdxs = fIdxs[idx];
+            double[] jsims = fSims[idx];
+            for (int i = 0; i < jdxs.length; i++) {
+                int p = positions.getAndIncrement(jdxs[i]);
+                idxs[p] = idx;
+                sims[p] = jsims[i];
+            }
+            fIdxs[idx] = null;
+            fSims[idx] = null;
+        });
+
+        range(0, n).parallel().forEach(jdx -> {
+            Arrays.quickSort(offsets[jdx], offsets[jdx + 1], new AbstractIntComparator() {
+                @Override
+                public int compare(int a, int b) {
+                    return Integer.compare(idxs[a], idxs[b]);
+                }
+            }, (a, b) -> {
+                int i = idxs[a];
+                idxs[a] = idxs[b];
+                idxs[b] = i;
+                double s = sims[a];
+                sims[a] = sims[b];
+                sims[b] = s;
+            });
+        });
+
+        return new CachedNeighborhood(offsets, idxs, sims);
+    }
+}
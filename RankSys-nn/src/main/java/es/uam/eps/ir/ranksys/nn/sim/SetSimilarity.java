@@ -19,10 +19,13 @@ package es.uam.eps.ir.ranksys.nn.sim;
 
 import es.uam.eps.ir.ranksys.fast.IdxDouble;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
-import it.unimi.dsi.fastutil.ints.Int2IntMap;
-import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import es.uam.eps.ir.ranksys.fast.utils.DenseAccumulator;
+import es.uam.eps.ir.ranksys.fast.utils.SortedIntersection;
+import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.IntToDoubleFunction;
 import java.util.stream.Stream;
 
@@ -34,6 +37,7 @@ import java.util.stream.Stream;
 public abstract class SetSimilarity implements Similarity {
 
     private final FastPreferenceData<?, ?, ?> data;
+    private final ThreadLocal<DenseAccumulator> accumulators;
 
     /**
      * Constructor.
@@ -42,49 +46,99 @@ public abstract class SetSimilarity implements Similarity {
      */
     public SetSimilarity(FastPreferenceData<?, ?, ?> data) {
         this.data = data;
+        this.accumulators = DenseAccumulator.threadLocal(data.numUsers());
     }
 
     @Override
     public IntToDoubleFunction similarity(int idx1) {
+        if (data.hasSortedRows()) {
+            int na = data.numItems(idx1);
+            int[] idxs1 = new int[na];
+            IntIterator iidxs1 = data.getUidxIidxs(idx1);
+            for (int i = 0; i < na; i++) {
+                idxs1[i] = iidxs1.nextInt();
+            }
+
+            return idx2 -> {
+                int nb = data.numItems(idx2);
+                int coo = SortedIntersection.size(idxs1, na, data.getUidxIidxs(idx2), nb);
+
+                return sim(coo, na, nb);
+            };
+        }
+
         IntSet set = new IntOpenHashSet();
-        data.getUidxPreferences(idx1).map(iv -> iv.idx).forEach(set::add);
+        IntIterator iidxs1 = data.getUidxIidxs(idx1);
+        while (iidxs1.hasNext()) {
+            set.add(iidxs1.nextInt());
+        }
 
         return idx2 -> {
-            int coo = (int) data.getUidxPreferences(idx2)
-                    .map(iv -> iv.idx)
-                    .filter(set::contains)
-                    .count();
+            int coo = 0;
+            IntIterator iidxs2 = data.getUidxIidxs(idx2);
+            while (iidxs2.hasNext()) {
+                if (set.contains(iidxs2.nextInt())) {
+                    coo++;
+                }
+            }
 
             return sim(coo, set.size(), data.numItems(idx2));
         };
     }
 
-    private Int2IntMap getIntersectionMap(int aidx) {
-        Int2IntOpenHashMap intersectionMap = new Int2IntOpenHashMap();
-        intersectionMap.defaultReturnValue(0);
+    private DenseAccumulator getIntersections(int aidx) {
+        DenseAccumulator intersections = accumulators.get();
+        intersections.reset();
 
-        data.getUidxPreferences(aidx).forEach(ip -> {
-            data.getIidxPreferences(ip.idx).forEach(up -> {
-                intersectionMap.addTo(up.idx, 1);
-            });
-        });
-
-        intersectionMap.remove(aidx);
+        IntIterator iidxs = data.getUidxIidxs(aidx);
+        while (iidxs.hasNext()) {
+            IntIterator vidxs = data.getIidxUidxs(iidxs.nextInt());
+            while (vidxs.hasNext()) {
+                intersections.add(vidxs.nextInt(), 1.0);
+            }
+        }
 
-        return intersectionMap;
+        return intersections;
     }
 
     @Override
     public Stream<IdxDouble> similarElems(int idx1) {
         int na = data.numItems(idx1);
         
-        return getIntersectionMap(idx1).int2IntEntrySet().stream()
-                .map(e -> {
-                    int idx2 = e.getIntKey();
-                    int coo = e.getIntValue();
-                    int nb = data.numItems(idx2);
-                    return new IdxDouble(idx2, sim(coo, na, nb));
-                });
+        DenseAccumulator intersections = getIntersections(idx1);
+        List<IdxDouble> sims = new ArrayList<>(intersections.size());
+        intersections.forEach((idx2, v) -> {
+            if (idx2 != idx1) {
+                int coo = (int) v;
+                int nb = data.numItems(idx2);
+                sims.add(new IdxDouble(idx2, sim(coo, na, nb)));
+            }
+        });
+        intersections.reset();
+
+        return sims.stream();
+    }
+
+    /**
+     * Returns the preference data whose users/items are compared.
+     *
+     * @return preference data
+     */
+    public FastPreferenceData<?, ?, ?> getData() {
+        return data;
+    }
+
+    /**
+     * Calculates the similarity value from an already computed intersection,
+     * as done by {@link #similarElems(int)}.
+     *
+     * @param intersectionSize size of the intersection of sets
+     * @param na size of the first set
+     * @param nb size of the second set
+     * @return similarity value
+     */
+    public double intersectionSimilarity(int intersectionSize, int na, int nb) {
+        return sim(intersectionSize, na, nb);
     }
 
     /**
@@ -19,8 +19,14 @@ package es.uam.eps.ir.ranksys.nn.sim;
 
 import es.uam.eps.ir.ranksys.fast.IdxDouble;
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.DenseAccumulator;
+import es.uam.eps.ir.ranksys.fast.utils.SortedIntersection;
+import it.unimi.dsi.fastutil.doubles.DoubleIterator;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.IntToDoubleFunction;
 import java.util.stream.Stream;
 
@@ -33,6 +39,7 @@ public abstract class VectorSimilarity implements Similarity {
 
     private final FastPreferenceData<?, ?, ?> data;
     private final Int2DoubleMap norm2Map;
+    private final ThreadLocal<DenseAccumulator> accumulators;
 
     /**
      * Constructor.
@@ -43,55 +50,124 @@ public abstract class VectorSimilarity implements Similarity {
         this.data = data;
         this.norm2Map = new Int2DoubleOpenHashMap();
         norm2Map.defaultReturnValue(0.0);
-        data.getUidxWithPreferences().forEach(idx -> norm2Map.put(idx, getNorm2(idx)));
+        data.getUidxWithPreferences().forEach(idx -> norm2Map.put(idx, computeNorm2(idx)));
+        this.accumulators = DenseAccumulator.threadLocal(data.numUsers());
     }
 
     @Override
     public IntToDoubleFunction similarity(int idx1) {
+        if (data.hasSortedRows()) {
+            int na = data.numItems(idx1);
+            int[] idxs1 = new int[na];
+            double[] vs1 = new double[na];
+            IntIterator iidxs1 = data.getUidxIidxs(idx1);
+            DoubleIterator ivs1 = data.getUidxVs(idx1);
+            for (int i = 0; i < na; i++) {
+                idxs1[i] = iidxs1.nextInt();
+                vs1[i] = ivs1.nextDouble();
+            }
+            double n2a = norm2Map.get(idx1);
+
+            return idx2 -> {
+                double prod = SortedIntersection.product(idxs1, vs1, na, data.getUidxIidxs(idx2), data.getUidxVs(idx2), data.numItems(idx2));
+
+                return sim(prod, n2a, norm2Map.get(idx2));
+            };
+        }
+
         Int2DoubleOpenHashMap map = new Int2DoubleOpenHashMap();
-        data.getUidxPreferences(idx1).forEach(iv -> map.put(iv.idx, iv.v));
+        data.forEachUidxPref(idx1, map::put);
 
         double n2a = norm2Map.get(idx1);
 
         return idx2 -> {
-            double prod = data.getUidxPreferences(idx2)
-                    .mapToDouble(iv -> iv.v * map.get(iv.idx))
-                    .sum();
+            double prod = 0.0;
+            IntIterator iidxs = data.getUidxIidxs(idx2);
+            DoubleIterator ivs = data.getUidxVs(idx2);
+            while (iidxs.hasNext()) {
+                prod += ivs.nextDouble() * map.get(iidxs.nextInt());
+            }
 
             return sim(prod, n2a, norm2Map.get(idx2));
         };
     }
 
-    private Int2DoubleMap getProductMap(int idx) {
-        Int2DoubleOpenHashMap productMap = new Int2DoubleOpenHashMap();
-        productMap.defaultReturnValue(0.0);
-
-        data.getUidxPreferences(idx).forEach(ip -> {
-            data.getIidxPreferences(ip.idx).forEach(up -> {
-                productMap.addTo(up.idx, ip.v * up.v);
-            });
-        });
-
-        productMap.remove(idx);
-
-        return productMap;
+    private DenseAccumulator getProducts(int idx) {
+        DenseAccumulator products = accumulators.get();
+        products.reset();
+
+        IntIterator iidxs = data.getUidxIidxs(idx);
+        DoubleIterator ivs = data.getUidxVs(idx);
+        while (iidxs.hasNext()) {
+            int iidx = iidxs.nextInt();
+            double iv = ivs.nextDouble();
+            IntIterator vidxs = data.getIidxUidxs(iidx);
+            DoubleIterator vvs = data.getIidxVs(iidx);
+            while (vidxs.hasNext()) {
+                products.add(vidxs.nextInt(), iv * vvs.nextDouble());
+            }
+        }
+
+        return products;
     }
 
-    private double getNorm2(int idx) {
-        return data.getUidxPreferences(idx).mapToDouble(ip -> ip.v * ip.v).sum();
+    private double computeNorm2(int idx) {
+        double norm2 = 0.0;
+        DoubleIterator ivs = data.getUidxVs(idx);
+        while (ivs.hasNext()) {
+            double iv = ivs.nextDouble();
+            norm2 += iv * iv;
+        }
+        return norm2;
     }
 
     @Override
     public Stream<IdxDouble> similarElems(int idx1) {
         double n2a = norm2Map.get(idx1);
 
-        return getProductMap(idx1).int2DoubleEntrySet().stream()
-                .map(e -> {
-                    int idx2 = e.getIntKey();
-                    double coo = e.getDoubleValue();
-                    double n2b = norm2Map.get(idx2);
-                    return new IdxDouble(idx2, sim(coo, n2a, n2b));
-                });
+        DenseAccumulator products = getProducts(idx1);
+        List<IdxDouble> sims = new ArrayList<>(products.size());
+        products.forEach((idx2, coo) -> {
+            if (idx2 != idx1) {
+                double n2b = norm2Map.get(idx2);
+                sims.add(new IdxDouble(idx2, sim(coo, n2a, n2b)));
+            }
+        });
+        products.reset();
+
+        return sims.stream();
+    }
+
+    /**
+     * Returns the preference data whose users/items are compared.
+     *
+     * @return preference data
+     */
+    public FastPreferenceData<?, ?, ?> getData() {
+        return data;
+    }
+
+    /**
+     * Returns the square of the norm of a user/item profile.
+     *
+     * @param idx index of the user/item
+     * @return square of the norm of the vector
+     */
+    public double getNorm2(int idx) {
+        return norm2Map.get(idx);
+    }
+
+    /**
+     * Calculates the similarity value from already computed inner product and
+     * norms, as done by {@link #similarElems(int)}.
+     *
+     * @param product value of the inner product of vectors
+     * @param norm2A square of the norm of the first vector
+     * @param norm2B square of the norm of the second vector
+     * @return similarity value
+     */
+    public double productSimilarity(double product, double norm2A, double norm2B) {
+        return sim(product, norm2A, norm2B);
     }
 
     /**
@@ -18,10 +18,10 @@
 package es.uam.eps.ir.ranksys.nn.user;
 
 import es.uam.eps.ir.ranksys.fast.preference.FastPreferenceData;
+import es.uam.eps.ir.ranksys.fast.utils.DenseAccumulator;
 import es.uam.eps.ir.ranksys.rec.fast.FastRankingRecommender;
 import es.uam.eps.ir.ranksys.nn.user.neighborhood.UserNeighborhood;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
-import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
 import static java.lang.Math.pow;
 
 /**
@@ -74,16 +74,24 @@ public class UserNeighborhoodRecommender<U, I> extends FastRankingRecommender<U,
 
     @Override
     protected Int2DoubleMap getScoresMap(int uidx) {
-        Int2DoubleOpenHashMap scoresMap = new Int2DoubleOpenHashMap();
-        scoresMap.defaultReturnValue(0.0);
-        neighborhood.getNeighbors(uidx).forEach(vs -> {
-            double w = pow(vs.v, q);
-            data.getUidxPreferences(vs.idx).forEach(iv -> {
-                double p = w * iv.v;
-                scoresMap.addTo(iv.idx, p);
+        DenseAccumulator scores = getScoresAccumulator(uidx);
+        Int2DoubleMap scoresMap = scores.toMap();
+        scores.reset();
+
+        return scoresMap;
+    }
+
+    @Override
+    protected DenseAccumulator getScoresAccumulator(int uidx) {
+        DenseAccumulator scores = getAccumulator();
+        neighborhood.forEachNeighbor(uidx, (vidx, sim) -> {
+            double w = pow(sim, q);
+            data.forEachUidxPref(vidx, (iidx, iv) -> {
+                double p = w * iv;
+                scores.add(iidx, p);
             });
         });
 
-        return scoresMap;
+        return scores;
     }
 }
@@ -52,4 +52,15 @@ public class CachedUserNeighborhood<U> extends UserNeighborhood<U> {
     public CachedUserNeighborhood(FastUserIndex<U> uIndex, Stream<IdObject<U, Stream<IdDouble<U>>>> neighborhoods) {
         super(uIndex, new CachedNeighborhood(uIndex.numUsers(), neighborhoods.map(un -> new IdxObject<>(uIndex.user2uidx(un.id), un.v.map(vs -> new IdxDouble(uIndex.user2uidx(vs.id), vs.v))))));
     }
+
+    /**
+     * Constructor that wraps an already cached neighborhood, such as the
+     * ones of {@link es.uam.eps.ir.ranksys.nn.neighborhood.AllPairsNeighborhoodBuilder}.
+     *
+     * @param uIndex fast user index
+     * @param neighborhood cached neighborhood
+     */
+    public CachedUserNeighborhood(FastUserIndex<U> uIndex, CachedNeighborhood neighborhood) {
+        super(uIndex, neighborhood);
+    }
 }
@@ -0,0 +1,61 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.user.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.preference.PreferenceTriples;
+import es.uam.eps.ir.ranksys.nn.neighborhood.IncrementalNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+
+/**
+ * User top-K neighborhood maintained incrementally. See {@link IncrementalNeighborhood}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <U> type of the users
+ */
+public class IncrementalUserNeighborhood<U> extends UserNeighborhood<U> {
+
+    private final IncrementalNeighborhood incremental;
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex fast user index
+     * @param sim vector similarity between users
+     * @param k maximum size of neighborhood
+     */
+    public IncrementalUserNeighborhood(FastUserIndex<U> uIndex, VectorSimilarity sim, int k) {
+        this(uIndex, new IncrementalNeighborhood(sim, k));
+    }
+
+    private IncrementalUserNeighborhood(FastUserIndex<U> uIndex, IncrementalNeighborhood incremental) {
+        super(uIndex, incremental);
+        this.incremental = incremental;
+    }
+
+    /**
+     * Adds a batch of new user-item preferences and repairs the affected
+     * neighborhoods.
+     *
+     * @param preferences new preferences
+     */
+    public void update(PreferenceTriples<?> preferences) {
+        incremental.update(preferences);
+    }
+}
@@ -0,0 +1,46 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.user.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.nn.neighborhood.LSHNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.SetSimilarity;
+
+/**
+ * User approximate top-K neighborhood. See {@link LSHNeighborhood}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <U> type of the users
+ */
+public class LSHUserNeighborhood<U> extends UserNeighborhood<U> {
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex fast user index
+     * @param sim set similarity between users
+     * @param k maximum size of neighborhood
+     * @param numBands number of bands of the signatures
+     * @param numRows number of hash values in each band
+     * @param seed seed of the hash functions
+     */
+    public LSHUserNeighborhood(FastUserIndex<U> uIndex, SetSimilarity sim, int k, int numBands, int numRows, long seed) {
+        super(uIndex, new LSHNeighborhood(sim, k, numBands, numRows, seed));
+    }
+}
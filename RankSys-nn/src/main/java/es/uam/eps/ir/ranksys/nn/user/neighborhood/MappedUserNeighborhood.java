@@ -0,0 +1,61 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.user.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.nn.neighborhood.MappedNeighborhood;
+import java.io.IOException;
+
+/**
+ * User neighborhood served from a memory-mapped file. See {@link MappedNeighborhood}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <U> type of the users
+ */
+public class MappedUserNeighborhood<U> extends UserNeighborhood<U> {
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex fast user index
+     * @param neighborhood mapped neighborhood
+     */
+    public MappedUserNeighborhood(FastUserIndex<U> uIndex, MappedNeighborhood neighborhood) {
+        super(uIndex, neighborhood);
+    }
+
+    /**
+     * Opens a binary neighborhood file of users.
+     *
+     * @param <U> type of the users
+     * @param uIndex fast user index
+     * @param path path of the binary file
+     * @return a mapped user neighborhood
+     * @throws IOException when the file does not exist, is not valid, does
+     * not match the index or IO error
+     */
+    public static <U> MappedUserNeighborhood<U> load(FastUserIndex<U> uIndex, String path) throws IOException {
+        MappedNeighborhood neighborhood = MappedNeighborhood.load(path);
+        if (neighborhood.size() != uIndex.numUsers()) {
+            throw new IOException("binary neighborhood file does not match index: " + neighborhood.size() + " users");
+        }
+
+        return new MappedUserNeighborhood<>(uIndex, neighborhood);
+    }
+}
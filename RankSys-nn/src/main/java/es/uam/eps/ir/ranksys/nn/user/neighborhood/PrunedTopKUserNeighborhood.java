@@ -0,0 +1,69 @@
+/* 
+ * Copyright (C) 2015 Information Retrieval Group at Universidad Autonoma
+ * de Madrid, http://ir.ii.uam.es
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+package es.uam.eps.ir.ranksys.nn.user.neighborhood;
+
+import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.nn.neighborhood.PrunedTopKNeighborhood;
+import es.uam.eps.ir.ranksys.nn.sim.VectorSimilarity;
+
+/**
+ * User top-K neighborhood with pruning of candidates. See {@link PrunedTopKNeighborhood}.
+ *
+ * @author Saúl Vargas (saul.vargas@uam.es)
+ * 
+ * @param <U> type of the users
+ */
+public class PrunedTopKUserNeighborhood<U> extends UserNeighborhood<U> {
+
+    private final PrunedTopKNeighborhood pruned;
+
+    /**
+     * Constructor.
+     *
+     * @param uIndex fast user index
+     * @param sim vector cosine or Jaccard similarity between users
+     * @param k maximum size of neighborhood
+     */
+    public PrunedTopKUserNeighborhood(FastUserIndex<U> uIndex, VectorSimilarity sim, int k) {
+        this(uIndex, new PrunedTopKNeighborhood(sim, k));
+    }
+
+    private PrunedTopKUserNeighborhood(FastUserIndex<U> uIndex, PrunedTopKNeighborhood pruned) {
+        super(uIndex, pruned);
+        this.pruned = pruned;
+    }
+
+    /**
+     * Returns the number of candidate users generated so far.
+     *
+     * @return number of candidates
+     */
+    public long getNumCandidates() {
+        return pruned.getNumCandidates();
+    }
+
+    /**
+     * Returns the number of candidate users whose similarity has been fully
+     * calculated so far.
+     *
+     * @return number of verified candidates
+     */
+    public long getNumVerified() {
+        return pruned.getNumVerified();
+    }
+}
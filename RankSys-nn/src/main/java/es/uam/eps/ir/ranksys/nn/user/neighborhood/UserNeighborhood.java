@@ -19,6 +19,7 @@ package es.uam.eps.ir.ranksys.nn.user.neighborhood;
 
 import es.uam.eps.ir.ranksys.core.IdDouble;
 import es.uam.eps.ir.ranksys.fast.IdxDouble;
+import es.uam.eps.ir.ranksys.fast.utils.IntDoubleConsumer;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.nn.neighborhood.Neighborhood;
 import java.util.stream.Stream;
@@ -73,6 +74,11 @@ public abstract class UserNeighborhood<U> implements Neighborhood, FastUserIndex
         return neighborhood.getNeighbors(idx);
     }
 
+    @Override
+    public void forEachNeighbor(int idx, IntDoubleConsumer consumer) {
+        neighborhood.forEachNeighbor(idx, consumer);
+    }
+
     /**
      * Returns a stream of user neighbors
      *
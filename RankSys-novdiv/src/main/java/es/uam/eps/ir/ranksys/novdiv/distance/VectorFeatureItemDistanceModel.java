@@ -19,6 +19,7 @@ package es.uam.eps.ir.ranksys.novdiv.distance;
 
 import es.uam.eps.ir.ranksys.core.IdObject;
 import es.uam.eps.ir.ranksys.core.feature.FeatureData;
+import es.uam.eps.ir.ranksys.fast.feature.CSRFastFeatureData;
 import it.unimi.dsi.fastutil.objects.Object2DoubleMap;
 import it.unimi.dsi.fastutil.objects.Object2DoubleOpenHashMap;
 import java.util.function.ToDoubleFunction;
@@ -26,7 +27,9 @@ import java.util.stream.Stream;
 
 /**
  * Feature-based item distance model that considers the features of items as
- * vectors.
+ * vectors. When the feature data is a binary {@link CSRFastFeatureData}, inner
+ * products are computed as intersections of the sorted feature lists or
+ * bitsets of the items.
  *
  * @author Saúl Vargas (saul.vargas@uam.es)
  * 
@@ -35,13 +38,44 @@ import java.util.stream.Stream;
  */
 public abstract class VectorFeatureItemDistanceModel<I, F> extends FeatureItemDistanceModel<I, F, Double> {
 
+    private final CSRFastFeatureData<I, F, Double> binaryData;
+
     /**
      * Constructor.
      *
      * @param featureData feature data
      */
+    @SuppressWarnings("unchecked")
     public VectorFeatureItemDistanceModel(FeatureData<I, F, Double> featureData) {
         super(featureData);
+        if (featureData instanceof CSRFastFeatureData && ((CSRFastFeatureData<I, F, Double>) featureData).isBinary()) {
+            this.binaryData = (CSRFastFeatureData<I, F, Double>) featureData;
+        } else {
+            this.binaryData = null;
+        }
+    }
+
+    @Override
+    public ToDoubleFunction<I> dist(I i) {
+        if (binaryData == null) {
+            return super.dist(i);
+        }
+
+        int iidx = binaryData.item2iidx(i);
+        double norm1 = iidx < 0 ? 0 : binaryData.numFeatures(iidx);
+        if (norm1 == 0) {
+            return j -> Double.NaN;
+        }
+
+        return j -> {
+            int jidx = binaryData.item2iidx(j);
+            double norm2 = jidx < 0 ? 0 : binaryData.numFeatures(jidx);
+            if (norm2 == 0) {
+                return Double.NaN;
+            }
+
+            return dist(binaryData.intersectionSize(iidx, jidx), norm1, norm2);
+        };
     }
 
     @Override
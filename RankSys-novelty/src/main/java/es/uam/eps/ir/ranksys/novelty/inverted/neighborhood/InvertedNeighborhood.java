@@ -17,27 +17,19 @@
  */
 package es.uam.eps.ir.ranksys.novelty.inverted.neighborhood;
 
-import es.uam.eps.ir.ranksys.fast.IdxDouble;
-import es.uam.eps.ir.ranksys.fast.IdxObject;
 import es.uam.eps.ir.ranksys.nn.neighborhood.Neighborhood;
-import it.unimi.dsi.fastutil.doubles.DoubleArrayList;
-import it.unimi.dsi.fastutil.ints.IntArrayList;
+import es.uam.eps.ir.ranksys.nn.neighborhood.TransposedNeighborhood;
 import java.util.function.IntPredicate;
-import java.util.stream.IntStream;
-import java.util.stream.Stream;
 
 /**
- * Inverted neighborhood.
+ * Inverted neighborhood. See {@link TransposedNeighborhood}.
  * 
  * S. Vargas and P. Castells. Improving sales diversity by recommending
  * users to items.
  *
  * @author Saúl Vargas (saul.vargas@uam.es)
  */
-public class InvertedNeighborhood implements Neighborhood {
-
-    private final IntArrayList[] idxla;
-    private final DoubleArrayList[] simla;
+public class InvertedNeighborhood extends TransposedNeighborhood {
 
     /**
      * Constructor.
@@ -48,32 +40,7 @@ public class InvertedNeighborhood implements Neighborhood {
      * neighborhood
      */
     public InvertedNeighborhood(int n, Neighborhood neighborhood, IntPredicate filter) {
-        this.idxla = new IntArrayList[n];
-        this.simla = new DoubleArrayList[n];
-
-        IntStream.range(0, n).parallel().filter(filter).forEach(idx -> {
-            this.idxla[idx] = new IntArrayList();
-            this.simla[idx] = new DoubleArrayList();
-        });
-
-        IntStream.range(0, n).parallel().mapToObj(idx -> {
-            return new IdxObject<>(idx, neighborhood.getNeighbors(idx));
-        }).forEachOrdered(in -> {
-            int idx = in.idx;
-            in.v.forEach(is -> {
-                if (this.idxla[is.idx] != null) {
-                    this.idxla[is.idx].add(idx);
-                    this.simla[is.idx].add(is.v);
-                }
-            });
-        });
-    }
-
-    @Override
-    public Stream<IdxDouble> getNeighbors(int idx) {
-        IntArrayList idxl = idxla[idx];
-        DoubleArrayList siml = simla[idx];
-        return IntStream.range(0, idxl.size()).mapToObj(i -> new IdxDouble(idxl.getInt(i), siml.getDouble(i)));
+        super(n, neighborhood, filter);
     }
 
 }
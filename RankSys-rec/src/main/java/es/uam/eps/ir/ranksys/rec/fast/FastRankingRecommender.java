@@ -22,6 +22,7 @@ import es.uam.eps.ir.ranksys.fast.IdxDouble;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import es.uam.eps.ir.ranksys.fast.utils.DenseAccumulator;
 import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
 import java.util.ArrayList;
 import java.util.List;
@@ -39,6 +40,8 @@ import java.util.stream.Collectors;
  */
 public abstract class FastRankingRecommender<U, I> extends AbstractFastRecommender<U, I> {
 
+    private final ThreadLocal<DenseAccumulator> accumulators;
+
     /**
      * Constructor.
      *
@@ -47,6 +50,7 @@ public abstract class FastRankingRecommender<U, I> extends AbstractFastRecommend
      */
     public FastRankingRecommender(FastUserIndex<U> uIndex, FastItemIndex<I> iIndex) {
         super(uIndex, iIndex);
+        this.accumulators = ThreadLocal.withInitial(() -> new DenseAccumulator(numItems()));
     }
 
     @Override
@@ -55,21 +59,28 @@ public abstract class FastRankingRecommender<U, I> extends AbstractFastRecommend
             return new FastRecommendation(uidx, new ArrayList<>(0));
         }
 
-        Int2DoubleMap scoresMap = getScoresMap(uidx);
-
-        if (maxLength == 0) {
-            maxLength = scoresMap.size();
+        final IntDoubleTopN topN;
+        DenseAccumulator scores = getScoresAccumulator(uidx);
+        if (scores != null) {
+            topN = new IntDoubleTopN(maxLength == 0 ? scores.size() : maxLength);
+            scores.forEach((iidx, score) -> {
+                if (filter.test(iidx)) {
+                    topN.add(iidx, score);
+                }
+            });
+            scores.reset();
+        } else {
+            Int2DoubleMap scoresMap = getScoresMap(uidx);
+            topN = new IntDoubleTopN(maxLength == 0 ? scoresMap.size() : maxLength);
+            scoresMap.int2DoubleEntrySet().forEach(e -> {
+                int iidx = e.getIntKey();
+                double score = e.getDoubleValue();
+                if (filter.test(iidx)) {
+                    topN.add(iidx, score);
+                }
+            });
         }
 
-        final IntDoubleTopN topN = new IntDoubleTopN(maxLength);
-        scoresMap.int2DoubleEntrySet().forEach(e -> {
-            int iidx = e.getIntKey();
-            double score = e.getDoubleValue();
-            if (filter.test(iidx)) {
-                topN.add(iidx, score);
-            }
-        });
-
         topN.sort();
 
         List<IdxDouble> items = topN.reverseStream()
@@ -86,4 +97,30 @@ public abstract class FastRankingRecommender<U, I> extends AbstractFastRecommend
      * @return a map of item-score pairs
      */
     protected abstract Int2DoubleMap getScoresMap(int uidx);
+
+    /**
+     * Returns the item scores in a dense accumulator, as an alternative to
+     * {@link #getScoresMap(int)} that avoids creating a hash map per user.
+     * Subclasses that override it should fill the accumulator returned by
+     * {@link #getAccumulator()}. By default returns null, meaning that the
+     * scores map is used.
+     *
+     * @param uidx index of the user whose scores are predicted
+     * @return accumulator of item scores, or null if not supported
+     */
+    protected DenseAccumulator getScoresAccumulator(int uidx) {
+        return null;
+    }
+
+    /**
+     * Returns the empty accumulator of item scores of the current thread.
+     *
+     * @return accumulator of item scores
+     */
+    protected DenseAccumulator getAccumulator() {
+        DenseAccumulator accumulator = accumulators.get();
+        accumulator.reset();
+
+        return accumulator;
+    }
 }
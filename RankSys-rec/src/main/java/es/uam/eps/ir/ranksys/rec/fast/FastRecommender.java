@@ -21,6 +21,9 @@ import es.uam.eps.ir.ranksys.rec.Recommender;
 import es.uam.eps.ir.ranksys.fast.FastRecommendation;
 import es.uam.eps.ir.ranksys.fast.index.FastItemIndex;
 import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
 import java.util.function.IntPredicate;
 import java.util.stream.IntStream;
 
@@ -66,4 +69,23 @@ public interface FastRecommender<U, I> extends Recommender<U, I>, FastUserIndex<
      */
     public FastRecommendation getRecommendation(int uidx, IntStream candidates);
 
+    /**
+     * Batch filter recommendation. Recommends to a block of users at once,
+     * which allows recommenders to share work between the users of the
+     * block. By default, it issues a filter recommendation to each user.
+     *
+     * @param uidxs indexes of the users to be issued a recommendation
+     * @param maxLength maximum length of recommendation, set to 0 for no limit
+     * @param filters (fast) filter provider for each user index
+     * @return a (fast) recommendation list for each user, in the same order
+     */
+    public default List<FastRecommendation> getRecommendations(int[] uidxs, int maxLength, IntFunction<IntPredicate> filters) {
+        List<FastRecommendation> recommendations = new ArrayList<>(uidxs.length);
+        for (int uidx : uidxs) {
+            recommendations.add(getRecommendation(uidx, maxLength, filters.apply(uidx)));
+        }
+
+        return recommendations;
+    }
+
 }
@@ -29,6 +29,7 @@ import java.util.function.Function;
 import java.util.logging.Level;
 import static java.util.logging.Logger.getLogger;
 import java.util.stream.Collectors;
+import static java.util.stream.IntStream.range;
 import java.util.stream.Stream;
 
 /**
@@ -89,6 +90,32 @@ public abstract class AbstractRecommenderRunner<U, I> implements RecommenderRunn
         }
     }
 
+    /**
+     * Prints the recommendations, which are generated for blocks of users
+     * at once.
+     *
+     * @param recProvider function that provides the recommendations of a
+     * block of users, in the same order, by calling a recommender
+     * @param batchSize number of users in each block, positive
+     * @param out output stream through which recommendations are printed
+     * @throws IOException when IO error
+     */
+    protected void runBatches(Function<List<U>, List<Recommendation<U, I>>> recProvider, int batchSize, OutputStream out) throws IOException {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batch size must be positive: " + batchSize);
+        }
+        try (RecommendationFormat.Writer<U, I> writer = format.getWriter(out)) {
+            int numUsers = users.size();
+            int numBatches = (int) ((numUsers + (long) batchSize - 1) / batchSize);
+
+            range(0, numBatches).parallel()
+                    .mapToObj(b -> recProvider.apply(users.subList((int) ((long) b * batchSize), (int) Math.min(numUsers, (b + 1L) * batchSize))))
+                    .forEachOrdered(recommendations -> {
+                        recommendations.forEach(recommendation -> writeCatchExceptions(writer, recommendation));
+                    });
+        }
+    }
+
     private void writeCatchExceptions(RecommendationFormat.Writer<U, I> writer, Recommendation<U, I> recommendation) {
         try {
             writer.write(recommendation);
@@ -26,8 +26,11 @@ import es.uam.eps.ir.ranksys.fast.index.FastUserIndex;
 import es.uam.eps.ir.ranksys.rec.Recommender;
 import es.uam.eps.ir.ranksys.rec.fast.FastRecommender;
 import es.uam.eps.ir.ranksys.rec.runner.AbstractRecommenderRunner;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.List;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.function.IntPredicate;
@@ -35,7 +38,7 @@ import java.util.stream.Collectors;
 
 /**
  * Fast filter runner. It creates recommendations by using the filter method in the
- * fast recommenders.
+ * fast recommenders or, when a batch size is given, the batch filter method.
  *
  * @author Saúl Vargas (saul.vargas@uam.es)
  * 
@@ -48,6 +51,7 @@ public class FastFilterRecommenderRunner<U, I> extends AbstractRecommenderRunner
     private final FastItemIndex<I> itemIndex;
     private final Function<U, IntPredicate> userFilter;
     private final int maxLength;
+    private final int batchSize;
 
     /**
      * Constructor.
@@ -60,20 +64,60 @@ public class FastFilterRecommenderRunner<U, I> extends AbstractRecommenderRunner
      * @param maxLength maximum length of the recommendation lists, 0 for no limit
      */
     public FastFilterRecommenderRunner(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, Set<U> users, RecommendationFormat<U, I> format, Function<U, IntPredicate> userFilter, int maxLength) {
+        this(userIndex, itemIndex, users, format, userFilter, maxLength, 0);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param userIndex fast user index
+     * @param itemIndex fast item index
+     * @param users target users
+     * @param format output recommendation format
+     * @param userFilter item filter provider for each user
+     * @param maxLength maximum length of the recommendation lists, 0 for no limit
+     * @param batchSize number of users whose recommendations are generated at
+     * once (see {@link FastRecommender#getRecommendations(int[], int, java.util.function.IntFunction)}), 0 to generate them one by one
+     * @throws IllegalArgumentException when batchSize is negative
+     */
+    public FastFilterRecommenderRunner(FastUserIndex<U> userIndex, FastItemIndex<I> itemIndex, Set<U> users, RecommendationFormat<U, I> format, Function<U, IntPredicate> userFilter, int maxLength, int batchSize) {
         super(users.stream(), format);
+        if (batchSize < 0) {
+            throw new IllegalArgumentException("batch size must not be negative: " + batchSize);
+        }
         this.userIndex = userIndex;
         this.itemIndex = itemIndex;
         this.userFilter = userFilter;
         this.maxLength = maxLength;
+        this.batchSize = batchSize;
     }
 
     @Override
     public void run(Recommender<U, I> recommender, OutputStream out) throws IOException {
-        run(user -> {
-            FastRecommendation rec = ((FastRecommender<U, I>) recommender).getRecommendation(userIndex.user2uidx(user), maxLength, userFilter.apply(user));
-            
-            return new Recommendation<>(userIndex.uidx2user(rec.getUidx()), rec.getIidxs().stream().map(iv -> new IdDouble<I>(itemIndex.iidx2item(iv.idx), iv.v)).collect(Collectors.toList()));
-        }, out);
+        if (batchSize > 0) {
+            runBatches(users -> {
+                int[] uidxs = new int[users.size()];
+                Int2ObjectMap<IntPredicate> filters = new Int2ObjectOpenHashMap<>();
+                for (int i = 0; i < uidxs.length; i++) {
+                    U user = users.get(i);
+                    uidxs[i] = userIndex.user2uidx(user);
+                    filters.put(uidxs[i], userFilter.apply(user));
+                }
+                List<FastRecommendation> recs = ((FastRecommender<U, I>) recommender).getRecommendations(uidxs, maxLength, filters::get);
+
+                return recs.stream().map(rec -> toRecommendation(rec)).collect(Collectors.toList());
+            }, batchSize, out);
+        } else {
+            run(user -> {
+                FastRecommendation rec = ((FastRecommender<U, I>) recommender).getRecommendation(userIndex.user2uidx(user), maxLength, userFilter.apply(user));
+
+                return toRecommendation(rec);
+            }, out);
+        }
+    }
+
+    private Recommendation<U, I> toRecommendation(FastRecommendation rec) {
+        return new Recommendation<>(userIndex.uidx2user(rec.getUidx()), rec.getIidxs().stream().map(iv -> new IdDouble<I>(itemIndex.iidx2item(iv.idx), iv.v)).collect(Collectors.toList()));
     }
 
 }